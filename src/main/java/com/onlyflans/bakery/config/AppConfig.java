@@ -2,16 +2,21 @@ package com.onlyflans.bakery.config;
 
 import com.onlyflans.bakery.model.User;
 import com.onlyflans.bakery.persistence.IUserPersistence;
+import com.onlyflans.bakery.security.BoundedPasswordEncoder;
+import com.onlyflans.bakery.security.CalibratedBCryptPasswordEncoder;
+import com.onlyflans.bakery.security.PasswordHashingExecutor;
+import com.onlyflans.bakery.security.SecurityUser;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 @Configuration
@@ -23,17 +28,26 @@ import org.springframework.security.crypto.password.PasswordEncoder;
  */
 public class AppConfig {
     private final IUserPersistence userRepository;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+
+    // Tiempo objetivo de verificación de BCrypt y rango permitido para el costo
+    @Value("${application.security.password.target-ms:250}")
+    private long passwordTargetMs;
+
+    @Value("${application.security.password.min-cost:10}")
+    private int passwordMinCost;
+
+    @Value("${application.security.password.max-cost:14}")
+    private int passwordMaxCost;
 
     // Funcion para encontrar los datos del usuario al hacer login
+    // Devuelve la entidad dentro de SecurityUser para que AuthService la reutilice sin volver a consultarla
     @Bean
     public UserDetailsService userDetailsService(){
         return username -> {
             final User user = userRepository.findByEmail(username)
                     .orElseThrow( () -> new UsernameNotFoundException("Username '" + username + "' not found"));
-            return org.springframework.security.core.userdetails.User.builder()
-                    .username(user.getEmail())
-                    .password(user.getContrasenna())
-                    .build();
+            return new SecurityUser(user);
         };
     }
     
@@ -42,9 +56,21 @@ public class AppConfig {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService()); // para obtener datos de usuario
         authProvider.setPasswordEncoder(passwordEncoder()); // para verificar las contraseñas
+        authProvider.setUserDetailsPasswordService(userDetailsPasswordService()); // re-hash al iniciar sesión
         return authProvider;
     }
 
+    // Si el hash guardado tiene un costo distinto al calibrado, DaoAuthenticationProvider
+    // lo vuelve a calcular tras un login exitoso y lo guarda por medio de este servicio
+    @Bean
+    public UserDetailsPasswordService userDetailsPasswordService(){
+        return (userDetails, newPassword) -> {
+            final User user = ((SecurityUser) userDetails).getUser();
+            user.setContrasenna(newPassword);
+            return new SecurityUser(userRepository.save(user));
+        };
+    }
+
     // 
     @Bean
     public AuthenticationManager authenticationManager(AuthenticationConfiguration config) throws Exception {
@@ -62,6 +88,11 @@ public class AppConfig {
         // BCryptPasswordEncoder es una implementación de PasswordEncoder que utiliza el algoritmo de hashing BCrypt.
         // BCrypt es una opción fuerte y segura para el hashing de contraseñas, ya que incluye un "salt" aleatorio
         // para protegerse contra ataques de tablas rainbow.
-        return new BCryptPasswordEncoder();
+        // El costo se calibra al iniciar según el hardware y se ejecuta en un pool acotado
+        // para que una ráfaga de logins no consuma todos los núcleos.
+        return new BoundedPasswordEncoder(
+                CalibratedBCryptPasswordEncoder.calibrate(passwordTargetMs, passwordMinCost, passwordMaxCost),
+                passwordHashingExecutor
+        );
         }
 }
@@ -5,19 +5,21 @@ import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.onlyflans.bakery.exception.dto.ErrorResponse;
-import com.onlyflans.bakery.model.Token;
 import com.onlyflans.bakery.model.User;
-import com.onlyflans.bakery.persistence.IUserPersistence;
-import com.onlyflans.bakery.persistence.token.TokenRepository;
+import com.onlyflans.bakery.model.UserRole;
+import com.onlyflans.bakery.security.SecurityUser;
+import com.onlyflans.bakery.security.VerifiedToken;
 import com.onlyflans.bakery.service.JwtService;
-import io.jsonwebtoken.Claims;
+import com.onlyflans.bakery.service.TokenService;
 import io.jsonwebtoken.ExpiredJwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -25,6 +27,9 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
@@ -32,7 +37,6 @@ import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
 
 import static org.aspectj.weaver.tools.cache.SimpleCacheFactory.path;
 
@@ -47,9 +51,25 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
-    private final TokenRepository tokenRepository;
-    private final IUserPersistence userEntityRepository;
+    private final TokenService tokenService;
 
+    @Value("${application.security.jwt.stateless-principal:false}")
+    private boolean statelessPrincipal;
+
+    /* Rutas en las que el filtro no hace nada aunque venga un header Bearer (matcher precalculado):
+    * - /auth/**: aún no hay token; refresh y logout leen el header por su cuenta
+    * - GET del catálogo y POST /products/batch: son permitAll en SecurityConfig y ningún handler usa el principal.
+    *   Si alguna de estas rutas llegara a necesitar el usuario autenticado, debe quitarse de aquí */
+    private static final RequestMatcher SKIP_AUTHENTICATION = new OrRequestMatcher(
+            AntPathRequestMatcher.antMatcher("/auth/**"),
+            AntPathRequestMatcher.antMatcher(HttpMethod.GET, "/api/v1/products/**"),
+            AntPathRequestMatcher.antMatcher(HttpMethod.POST, "/api/v1/products/batch")
+    );
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return SKIP_AUTHENTICATION.matches(request);
+    }
 
     @Override
     protected void doFilterInternal(
@@ -58,12 +78,6 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             @NonNull  FilterChain filterChain
     ) throws ServletException, IOException {
 
-        // Si la ruta contiene /auth, se deja pasar, aun no hay token
-        if(request.getServletPath().contains("/auth")){
-            filterChain.doFilter(request, response);
-            return;
-        }
-
         // Buscar el encabezado de autorización
         final String authHeader = request.getHeader(HttpHeaders.AUTHORIZATION);
 
@@ -75,10 +89,11 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         // Extraer el token JWT del header
         final String jwtToken = authHeader.substring(7);
 
-        String userEmail;
+        // Se parsea y verifica la firma una sola vez por petición
+        final VerifiedToken verifiedToken;
 
         try {
-            userEmail = jwtService.extractUsername(jwtToken);
+            verifiedToken = jwtService.verify(jwtToken);
         } catch (ExpiredJwtException ex) {
             ErrorResponse error = new ErrorResponse(
                     LocalDateTime.now(),
@@ -105,41 +120,44 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             return;
         }
 
+        final String userEmail = verifiedToken.subject();
+
         // Verifica que el usuario esté autenticado
         if(userEmail == null || SecurityContextHolder.getContext().getAuthentication() != null){
             filterChain.doFilter(request, response);
             return;
         }
 
-        // Verificar si el token existe y que no esté expirado o revocado
-        final Token token = tokenRepository.findByToken(jwtToken)
-                .orElse(null);
-
-        if(token == null || token.isExpired() || token.isRevoked()){
-            filterChain.doFilter(request, response);
-            return;
-        }
-
-        // Obtener los detalles del usuario
-        final UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
-        final Optional<User> user = userEntityRepository.findByEmail(userDetails.getUsername());
-
-        if(user.isEmpty()){
+        // Verificar si el token existe y que no esté expirado o revocado (cache en memoria, luego BD)
+        if(!tokenService.isTokenActive(verifiedToken)){
             filterChain.doFilter(request, response);
             return;
         }
 
-        // Validacion de token: true si el campo user del token y del usuario son iguales
-        final boolean isTokenValid = jwtService.isTokenValid(jwtToken, user.get());
-        if(!isTokenValid){
-            return;
+        final UserDetails userDetails;
+
+        if(statelessPrincipal){
+            // Modo sin estado: el principal se arma solo con los claims ya verificados (sub, jti=rut, role),
+            // sin consultar la BD. Es seguro porque un cambio de rol revoca los tokens del usuario.
+            userDetails = new SecurityUser(User.builder()
+                    .rut(verifiedToken.rut())
+                    .email(userEmail)
+                    .userRole(UserRole.valueOf(verifiedToken.role()))
+                    .build());
+        } else {
+            // Obtener los detalles del usuario (una sola consulta: SecurityUser ya contiene la entidad)
+            userDetails = this.userDetailsService.loadUserByUsername(userEmail);
+            final User user = ((SecurityUser) userDetails).getUser();
+
+            // Validacion de token: true si el campo user del token y del usuario son iguales
+            final boolean isTokenValid = jwtService.isTokenValid(verifiedToken, user);
+            if(!isTokenValid){
+                return;
+            }
         }
 
-        // EXTRAER ROL DESDE EL JWT
-        Claims claims = jwtService.getClaims(jwtToken);
-        String role = claims.get("role", String.class);
-
-        SimpleGrantedAuthority authority = new SimpleGrantedAuthority("ROLE_" + role);
+        // EXTRAER ROL DESDE EL JWT (ya verificado)
+        SimpleGrantedAuthority authority = new SimpleGrantedAuthority("ROLE_" + verifiedToken.role());
 
         // CREAR AUTENTICACIÓN CON EL ROL DEL TOKEN
         final UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
@@ -0,0 +1,93 @@
+package com.onlyflans.bakery.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.multipart.MultipartConfiguration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * Clientes de S3. Con aws.s3.endpoint se apuntan a un servicio compatible con S3
+ * (MinIO, LocalStack) en lugar de AWS, normalmente junto con aws.s3.path-style=true.
+ */
+@Configuration
+public class S3Config {
+
+    @Value("${aws.region}")
+    private String awsRegion;
+
+    @Value("${aws.s3.endpoint:}")
+    private String endpoint;
+
+    @Value("${aws.s3.path-style:false}")
+    private boolean pathStyle;
+
+    @Bean(destroyMethod = "close")
+    public S3Client s3Client() {
+        var builder = S3Client.builder()
+                .region(Region.of(awsRegion))
+                .forcePathStyle(pathStyle);
+        if (!endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        return builder.build();
+    }
+
+    /* Cliente asíncrono (Netty) para las subidas: no bloquea un hilo por subida, reutiliza
+    * conexiones de un pool acotado y sube en partes paralelas los objetos sobre el umbral */
+    @Bean(destroyMethod = "close")
+    public S3AsyncClient s3AsyncClient(
+            @Value("${aws.s3.async.max-concurrency:50}") int maxConcurrency,
+            @Value("${aws.s3.async.max-pending-acquires:1000}") int maxPendingAcquires,
+            @Value("${aws.s3.async.connection-acquisition-timeout-ms:10000}") long acquisitionTimeoutMs,
+            @Value("${aws.s3.async.connection-timeout-ms:2000}") long connectionTimeoutMs,
+            @Value("${aws.s3.async.read-timeout-ms:30000}") long readTimeoutMs,
+            @Value("${aws.s3.async.write-timeout-ms:30000}") long writeTimeoutMs,
+            @Value("${aws.s3.async.api-call-timeout-ms:120000}") long apiCallTimeoutMs,
+            @Value("${aws.s3.multipart.threshold-bytes:8388608}") long multipartThreshold,
+            @Value("${aws.s3.multipart.part-size-bytes:5242880}") long partSize
+    ) {
+        var builder = S3AsyncClient.builder()
+                .region(Region.of(awsRegion))
+                .forcePathStyle(pathStyle)
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                        .maxConcurrency(maxConcurrency)
+                        .maxPendingConnectionAcquires(maxPendingAcquires)
+                        .connectionAcquisitionTimeout(Duration.ofMillis(acquisitionTimeoutMs))
+                        .connectionTimeout(Duration.ofMillis(connectionTimeoutMs))
+                        .readTimeout(Duration.ofMillis(readTimeoutMs))
+                        .writeTimeout(Duration.ofMillis(writeTimeoutMs)))
+                .overrideConfiguration(config -> config.apiCallTimeout(Duration.ofMillis(apiCallTimeoutMs)))
+                .multipartEnabled(true)
+                .multipartConfiguration(MultipartConfiguration.builder()
+                        .thresholdInBytes(multipartThreshold)
+                        .minimumPartSizeInBytes(partSize)
+                        .build());
+        if (!endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        return builder.build();
+    }
+
+    // Firma URLs de subida directa (PUT) para que las imágenes no pasen por la API
+    @Bean(destroyMethod = "close")
+    public S3Presigner s3Presigner() {
+        var builder = S3Presigner.builder()
+                .region(Region.of(awsRegion))
+                .serviceConfiguration(S3Configuration.builder()
+                        .pathStyleAccessEnabled(pathStyle)
+                        .build());
+        if (!endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,60 @@
+package com.onlyflans.bakery.controller;
+
+import com.onlyflans.bakery.security.PasswordHashingExecutor;
+import com.onlyflans.bakery.security.TokenValidityCache;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/v1/metrics")
+@Tag(name = "Metrics Controller", description = "Métricas internas de la API (solo administradores)")
+public class MetricsController {
+
+    private final TokenValidityCache tokenValidityCache;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+
+    public MetricsController(TokenValidityCache tokenValidityCache, PasswordHashingExecutor passwordHashingExecutor) {
+        this.tokenValidityCache = tokenValidityCache;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+    }
+
+    @GetMapping("/token-cache")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Métricas del cache de tokens", description = "Devuelve los aciertos, fallos y tamaño actual del cache de validez de tokens.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Métricas recuperadas exitosamente"),
+            @ApiResponse(responseCode = "403", description = "Acceso denegado")
+    })
+    public ResponseEntity<Map<String, Object>> getTokenCacheMetrics() {
+        long hits = tokenValidityCache.getHits();
+        long misses = tokenValidityCache.getMisses();
+        long total = hits + misses;
+
+        return ResponseEntity.ok(Map.of(
+                "hits", hits,
+                "misses", misses,
+                "hitRatio", total == 0 ? 0.0 : (double) hits / total,
+                "size", tokenValidityCache.size()
+        ));
+    }
+
+    @GetMapping("/password-hashing")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Métricas del pool de BCrypt", description = "Devuelve el tamaño del pool, la cola, los rechazos (429) y los tiempos de espera en cola y de hashing.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Métricas recuperadas exitosamente"),
+            @ApiResponse(responseCode = "403", description = "Acceso denegado")
+    })
+    public ResponseEntity<Map<String, Object>> getPasswordHashingMetrics() {
+        return ResponseEntity.ok(passwordHashingExecutor.getMetrics());
+    }
+}
@@ -4,6 +4,7 @@ import com.onlyflans.bakery.model.Order;
 import com.onlyflans.bakery.model.dto.request.OrderCreateRequest;
 import com.onlyflans.bakery.model.dto.request.OrderUpdateRequest;
 import com.onlyflans.bakery.model.dto.response.OrderDTO;
+import com.onlyflans.bakery.model.dto.response.OrderQuoteDTO;
 import com.onlyflans.bakery.service.OrderService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -74,6 +75,18 @@ public class OrderController {
         return ResponseEntity.status(HttpStatus.CREATED).body(orderCreated);
     }
 
+    @PostMapping("/quote")
+    @Operation(summary = "Cotizar un carrito", description = "Calcula los subtotales por línea y el total de un carrito con las mismas reglas de precio que la creación de órdenes, sin crear la orden.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Cotización calculada exitosamente.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = OrderQuoteDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Carrito vacío o con cantidades inválidas.", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Alguno de los productos no existe.", content = @Content)
+    })
+    public ResponseEntity<OrderQuoteDTO> quoteOrder(@RequestBody @Valid OrderCreateRequest request) {
+        return ResponseEntity.ok(orderService.quoteOrder(request));
+    }
+
     // 🟧 PUT: actualizar una orden
     @PutMapping("/{id}")
     @Operation(summary = "Actualizar una orden existente", description = "Permite modificar el estado o total de una orden específica.")
@@ -2,9 +2,20 @@ package com.onlyflans.bakery.controller;
 
 import com.onlyflans.bakery.exception.dto.ErrorResponse;
 import com.onlyflans.bakery.model.Product;
+import com.onlyflans.bakery.model.dto.request.ProductBatchRequest;
 import com.onlyflans.bakery.model.dto.request.ProductCreateRequest;
+import com.onlyflans.bakery.model.dto.request.ProductImageConfirmRequest;
+import com.onlyflans.bakery.model.dto.request.ProductImageUploadRequest;
 import com.onlyflans.bakery.model.dto.request.ProductUpdateRequest;
+import com.onlyflans.bakery.model.dto.response.ProductBatchDTO;
 import com.onlyflans.bakery.model.dto.response.ProductDTO;
+import com.onlyflans.bakery.model.dto.response.ProductFacetsDTO;
+import com.onlyflans.bakery.model.dto.response.ProductImageUploadDTO;
+import com.onlyflans.bakery.model.dto.response.ProductImportResultDTO;
+import com.onlyflans.bakery.model.dto.response.ProductPageDTO;
+import com.onlyflans.bakery.service.CatalogResponseCache;
+import com.onlyflans.bakery.service.ProductCatalogCache;
+import com.onlyflans.bakery.service.ProductImportService;
 import com.onlyflans.bakery.service.ProductService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -18,14 +29,17 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 
@@ -36,15 +50,23 @@ import java.util.List;
 public class ProductController {
 
     private final ProductService productService;
+    private final CatalogResponseCache catalogResponseCache;
+    private final ProductImportService productImportService;
 
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService,
+                             CatalogResponseCache catalogResponseCache,
+                             ProductImportService productImportService) {
         this.productService = productService;
+        this.catalogResponseCache = catalogResponseCache;
+        this.productImportService = productImportService;
     }
 
     @Operation(
             summary = "Crear un nuevo producto",
             description = "Crea un producto nuevo en el sistema junto con una imagen. "
-                    + "El archivo debe ser una imagen válida (png, jpeg, webp) y no exceder los 5 MB."
+                    + "El archivo debe ser una imagen válida (png, jpeg, webp) y no exceder los 5 MB. "
+                    + "La imagen se sube a S3 en segundo plano: el producto queda con imageStatus PENDING "
+                    + "y sin url hasta que la subida termina (READY o FAILED)."
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -132,6 +154,37 @@ public class ProductController {
         return ResponseEntity.status(HttpStatus.CREATED).body(saved);
     }
 
+    @PostMapping(value = "/import", consumes = { "text/csv", MediaType.APPLICATION_NDJSON_VALUE })
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Importar productos en lote",
+            description = "Crea o actualiza productos desde un cuerpo CSV (cabecera codigo,categoria,nombre,descripcion,precio) "
+                    + "o NDJSON (un ProductCreateRequest por línea). El archivo se procesa en streaming y por tramos; "
+                    + "las filas inválidas se informan sin detener la importación. Las imágenes se agregan después con PUT."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Importación procesada; revisar errores por fila", content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ProductImportResultDTO.class)
+            )),
+            @ApiResponse(responseCode = "400", description = "Cabecera CSV ausente o incorrecta", content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class)
+            )),
+            @ApiResponse(responseCode = "403", description = "Acceso denegado"),
+            @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public ResponseEntity<ProductImportResultDTO> importProducts(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            InputStream body) throws IOException {
+
+        ProductImportService.Format format = MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType)
+                ? ProductImportService.Format.NDJSON
+                : ProductImportService.Format.CSV;
+
+        return ResponseEntity.ok(productImportService.importProducts(body, format));
+    }
+
     @GetMapping
     @Operation(summary = "Obtener todos los productos", description = "Recupera la lista de todos los productos disponibles en la panadería OnlyFlans")
     @ApiResponses(value = {
@@ -143,10 +196,185 @@ public class ProductController {
                                     value = "[{\"Codigo\": \"TC001\", \"Categoria\": \"Tortas Cuadradas\", \"nombre\": \"Torta Cuadrada de Chocolate\", \"Descripcion\": \"Deliciosa torta de chocolate con capas de ganache y un toque de avellanas. Personalizable con mensajes especiales\", \"Precio\": \"45000\", \"Url imagen\": \"https://brigams.pe/wp-content/uploads/chocolate-2.jpg\"}, {\"Codigo\": \"TC002\", \"Categoria\": \"Tortas Cuadradas\", \"nombre\": \"Torta Cuadrada de Frutas\", \"Descripcion\": \"Una mezcla de frutas frescas y crema chantilly sobre un suave bizcocho de vainilla, ideal para celebraciones.\", \"Precio\": \"50000\", \"Url imagen\": \"https://brigams.pe/wp-content/uploads/tutifruti-2-1000x667.jpg\"}]"
                             )
                     )),
+            @ApiResponse(responseCode = "304", description = "El catálogo no ha cambiado desde el ETag enviado en If-None-Match"),
+            @ApiResponse(responseCode = "500", description = "Error interno del servidor al intentar recuperar los productos")
+    })
+    public ResponseEntity<byte[]> getAllProducts(WebRequest webRequest){
+        ProductCatalogCache.Snapshot catalog = productService.getCatalog();
+        boolean gzip = acceptsGzip(webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING));
+
+        /* Cada codificación es una representación distinta y lleva su propio ETag fuerte
+        * ("...-gz" para gzip). If-None-Match acepta cualquiera de los dos: ambos indican
+        * que el cliente ya tiene esta versión del catálogo, y se responde 304 sin cuerpo */
+        String identityEtag = catalog.etag();
+        String gzipEtag = gzipEtag(identityEtag);
+        String etag = gzip ? gzipEtag : identityEtag;
+        if (matchesIfNoneMatch(webRequest.getHeader(HttpHeaders.IF_NONE_MATCH), identityEtag, gzipEtag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+
+        // JSON (y gzip) ya generados para esta versión: se escriben los bytes tal cual
+        CatalogResponseCache.Rendered rendered = catalogResponseCache.render(catalog);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+
+        if (gzip) {
+            return response.eTag(gzipEtag(rendered.etag()))
+                    .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                    .body(rendered.gzip());
+        }
+        return response.eTag(rendered.etag()).body(rendered.json());
+    }
+
+    // "abc-12" -> "abc-12-gz"
+    private static String gzipEtag(String etag) {
+        return etag.substring(0, etag.length() - 1) + "-gz\"";
+    }
+
+    // true si If-None-Match es * o contiene alguno de los ETag (comparación débil, como indica RFC 9110)
+    private static boolean matchesIfNoneMatch(String ifNoneMatch, String... etags) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*")) {
+                return true;
+            }
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            for (String etag : etags) {
+                if (value.equals(etag)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // true si Accept-Encoding incluye gzip (o *) sin q=0
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            String name = parts[0].trim().toLowerCase();
+            if (!name.equals("gzip") && !name.equals("*")) {
+                continue;
+            }
+            boolean rejected = false;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim().replace(" ", "");
+                if (param.startsWith("q=")) {
+                    try {
+                        rejected = Double.parseDouble(param.substring(2)) == 0.0;
+                    } catch (NumberFormatException ex) {
+                        rejected = true;
+                    }
+                }
+            }
+            if (!rejected) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @GetMapping("/page")
+    @Operation(
+            summary = "Obtener productos paginados",
+            description = "Devuelve una página de productos ordenada por código. Para la página siguiente se envía "
+                    + "el nextCursor recibido como cursor. Opcionalmente filtra por categoría."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Página recuperada exitosamente", content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ProductPageDTO.class)
+            )),
+            @ApiResponse(responseCode = "400", description = "Tamaño de página fuera de rango (1 a 100)", content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class)
+            )),
+            @ApiResponse(responseCode = "500", description = "Error interno del servidor al intentar recuperar los productos")
+    })
+    public ResponseEntity<ProductPageDTO> getProductPage(
+            @Parameter(description = "Código del último producto de la página anterior (nextCursor).", example = "TC002")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Cantidad de productos por página (máximo 100).", example = "20")
+            @RequestParam(defaultValue = "20") int size,
+            @Parameter(description = "Categoría por la que filtrar.", example = "Tortas Cuadradas")
+            @RequestParam(required = false) String categoria) {
+
+        return ResponseEntity.ok(productService.getProductPage(cursor, size, categoria));
+    }
+
+    @GetMapping("/search")
+    @Operation(
+            summary = "Buscar productos",
+            description = "Busca productos por nombre y descripción sin distinguir tildes ni mayúsculas. "
+                    + "Los resultados se ordenan por relevancia y el último término también coincide como prefijo."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Resultados recuperados exitosamente", content = @Content(
+                    mediaType = "application/json",
+                    array = @ArraySchema(schema = @Schema(implementation = ProductDTO.class))
+            )),
+            @ApiResponse(responseCode = "400", description = "Límite de resultados fuera de rango (1 a 50)", content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class)
+            )),
+            @ApiResponse(responseCode = "500", description = "Error interno del servidor al buscar productos")
+    })
+    public ResponseEntity<List<ProductDTO>> searchProducts(
+            @Parameter(description = "Texto a buscar.", required = true, example = "torta choco")
+            @RequestParam String q,
+            @Parameter(description = "Cantidad máxima de resultados (máximo 50).", example = "20")
+            @RequestParam(defaultValue = "20") int limit) {
+
+        return ResponseEntity.ok(productService.searchProducts(q, limit));
+    }
+
+    @GetMapping("/facets")
+    @Operation(
+            summary = "Obtener facetas del catálogo",
+            description = "Devuelve la cantidad de productos por categoría y el precio mínimo, máximo e histograma de precios."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Facetas recuperadas exitosamente", content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ProductFacetsDTO.class)
+            )),
+            @ApiResponse(responseCode = "500", description = "Error interno del servidor al calcular las facetas")
+    })
+    public ResponseEntity<ProductFacetsDTO> getFacets() {
+        return ResponseEntity.ok(productService.getFacets());
+    }
+
+    @PostMapping("/batch")
+    @Operation(
+            summary = "Obtener varios productos por código",
+            description = "Recupera hasta 100 productos en una sola llamada. Los productos se devuelven en el orden "
+                    + "de la petición y los códigos inexistentes se informan en notFound."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Productos recuperados exitosamente", content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ProductBatchDTO.class)
+            )),
+            @ApiResponse(responseCode = "400", description = "Lista de códigos vacía o con más de 100 elementos", content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class)
+            )),
             @ApiResponse(responseCode = "500", description = "Error interno del servidor al intentar recuperar los productos")
     })
-    public ResponseEntity<List<ProductDTO>> getAllProducts(){
-        return ResponseEntity.ok(productService.getAllProducts());
+    public ResponseEntity<ProductBatchDTO> getProductsBatch(@RequestBody @Valid ProductBatchRequest request) {
+        return ResponseEntity.ok(productService.getProductsByCodigos(request.codigos()));
     }
 
     @GetMapping("/{codigo}")
@@ -179,7 +407,9 @@ public class ProductController {
     @PreAuthorize("hasRole('ADMIN')")
     @Operation(
             summary = "Actualizar un producto existente",
-            description = "Actualiza datos y/o imagen de un producto usando multipart/form-data. Se envía un JSON en la parte 'product' y opcionalmente un archivo en 'file'."
+            description = "Actualiza datos y/o imagen de un producto usando multipart/form-data. Se envía un JSON en la parte 'product' y opcionalmente un archivo en 'file'. "
+                    + "Si se envía un archivo, la imagen se sube en segundo plano (imageStatus PENDING) y se mantiene la url anterior hasta que termine. "
+                    + "Sin archivo ni url se conserva la imagen actual."
     )
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Producto actualizado exitosamente"),
@@ -190,7 +420,7 @@ public class ProductController {
     })
     public ResponseEntity<ProductDTO> updateProduct(
             @PathVariable String codigo,
-            @RequestPart("product") ProductUpdateRequest product,
+            @Valid @RequestPart("product") ProductUpdateRequest product,
             @RequestPart(value = "file", required = false) MultipartFile file
     ) throws IOException {
 
@@ -199,6 +429,61 @@ public class ProductController {
         return ResponseEntity.ok(updatedProduct);
     }
 
+    @PostMapping("/{codigo}/image/upload-url")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Obtener una URL firmada para subir la imagen",
+            description = "Devuelve una URL de S3 firmada por unos minutos para subir la imagen directamente con PUT, "
+                    + "enviando las cabeceras indicadas (tipo, tamaño y SHA-256 del archivo quedan fijados en la firma). "
+                    + "Mismas reglas que el multipart: png, jpeg o webp y máximo 5 MB. Luego se llama a /image/confirm."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "URL firmada generada", content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ProductImageUploadDTO.class)
+            )),
+            @ApiResponse(responseCode = "400", description = "Tipo, extensión o tamaño no permitido", content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class)
+            )),
+            @ApiResponse(responseCode = "403", description = "Acceso denegado"),
+            @ApiResponse(responseCode = "404", description = "Producto no encontrado"),
+            @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public ResponseEntity<ProductImageUploadDTO> createImageUpload(
+            @Parameter(description = "Codigo del producto.", required = true, example = "TC001") @PathVariable String codigo,
+            @Valid @RequestBody ProductImageUploadRequest request) {
+
+        return ResponseEntity.ok(productService.createImageUpload(codigo, request));
+    }
+
+    @PostMapping("/{codigo}/image/confirm")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Confirmar la imagen subida con la URL firmada",
+            description = "Revisa el objeto subido a S3 (tamaño, tipo y firma PNG/JPEG/WEBP) y, si es válido, "
+                    + "lo copia a su key por contenido (assets/img/products/{sha256}) y la deja como imagen del producto "
+                    + "(imageStatus READY); la subida temporal se elimina. Si no es válido se elimina de S3."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Imagen confirmada", content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ProductDTO.class)
+            )),
+            @ApiResponse(responseCode = "400", description = "La key no es de este producto o el archivo no es una imagen válida", content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class)
+            )),
+            @ApiResponse(responseCode = "403", description = "Acceso denegado"),
+            @ApiResponse(responseCode = "404", description = "Producto o imagen subida no encontrada"),
+            @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public ResponseEntity<ProductDTO> confirmImageUpload(
+            @Parameter(description = "Codigo del producto.", required = true, example = "TC001") @PathVariable String codigo,
+            @Valid @RequestBody ProductImageConfirmRequest request) {
+
+        return ResponseEntity.ok(productService.confirmImageUpload(codigo, request));
+    }
 
     @DeleteMapping("/{codigo}")
     @PreAuthorize("hasRole('ADMIN')")
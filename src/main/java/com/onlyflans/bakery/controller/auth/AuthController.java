@@ -41,6 +41,7 @@ public class AuthController {
             )),
             @ApiResponse(responseCode = "400", description = "Datos inválidos para registrar el usuario"),
             @ApiResponse(responseCode = "409", description = "El usuario ya existe"),
+            @ApiResponse(responseCode = "429", description = "Demasiadas solicitudes de registro simultáneas (ver header Retry-After)"),
             @ApiResponse(responseCode = "500", description = "Error interno del servidor al intentar registrar el usuario")
     })
     public ResponseEntity<TokenDTOResponse> register(@Valid @RequestBody final UserCreateRequest request){
@@ -57,6 +58,7 @@ public class AuthController {
             @ApiResponse(responseCode = "200", description = "Usuario autenticado exitosamente"),
             @ApiResponse(responseCode = "400", description = "Datos inválidos para autenticar el usuario"),
             @ApiResponse(responseCode = "401", description = "Credenciales inválidas"),
+            @ApiResponse(responseCode = "429", description = "Demasiadas solicitudes de login simultáneas (ver header Retry-After)"),
             @ApiResponse(responseCode = "500", description = "Error interno del servidor al intentar autenticar el usuario")
     })
     public ResponseEntity<TokenDTOResponse> authenticate(@Valid @RequestBody LoginRequest request){
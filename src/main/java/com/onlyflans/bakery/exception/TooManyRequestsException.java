@@ -0,0 +1,15 @@
+package com.onlyflans.bakery.exception;
+
+/* Se lanza cuando un recurso acotado (p. ej. el pool de BCrypt) está saturado; se responde 429 con Retry-After */
+public class TooManyRequestsException extends RuntimeException{
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
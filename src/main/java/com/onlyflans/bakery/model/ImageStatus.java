@@ -0,0 +1,8 @@
+package com.onlyflans.bakery.model;
+
+/* Estado de la imagen de un producto mientras se sube a S3 en segundo plano */
+public enum ImageStatus {
+    PENDING, // guardada localmente, esperando la subida
+    READY,   // url apunta a la imagen subida
+    FAILED   // se agotaron los reintentos; url conserva la imagen anterior (si había)
+}
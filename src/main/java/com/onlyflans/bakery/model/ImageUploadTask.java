@@ -0,0 +1,49 @@
+package com.onlyflans.bakery.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Fila del outbox de imágenes: se inserta en la misma transacción que el producto
+ * y ProductImageOutbox la procesa después, fuera de esa transacción.
+ */
+@Entity
+@Table(name = "IMAGE_UPLOAD_TASKS", indexes = {
+        @Index(name = "idx_image_tasks_node_next_attempt", columnList = "nodeId, nextAttemptAt"),
+        @Index(name = "idx_image_tasks_producto", columnList = "productoCodigo")
+})
+@Data @AllArgsConstructor @NoArgsConstructor
+public class ImageUploadTask {
+
+    @Id
+    @GeneratedValue
+    private Long id;
+
+    private String productoCodigo;
+
+    // Instancia que preparó el archivo: solo ella puede leerlo si el staging no es compartido
+    @Column(length = 100)
+    private String nodeId;
+
+    // Archivo preparado en el disco local (directorio de staging)
+    @Column(length = 1024)
+    private String stagedPath;
+
+    private String contentType;
+
+    // Key de destino en S3, derivada del SHA-256 del archivo (S3Service.contentImageKey)
+    private String objectKey;
+
+    private int attempts;
+
+    private Instant nextAttemptAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    private Instant createdAt;
+}
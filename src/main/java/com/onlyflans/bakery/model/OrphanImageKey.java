@@ -0,0 +1,30 @@
+package com.onlyflans.bakery.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Objeto de S3 que un producto dejó de usar (imagen reemplazada o producto eliminado).
+ * ProductImageSweeper lo borra pasado un tiempo de gracia si ningún producto lo referencia.
+ */
+@Entity
+@Table(name = "ORPHAN_IMAGE_KEYS", indexes = {
+        @Index(name = "idx_orphan_keys_created", columnList = "createdAt"),
+        @Index(name = "idx_orphan_keys_object", columnList = "objectKey")
+})
+@Data @AllArgsConstructor @NoArgsConstructor
+public class OrphanImageKey {
+
+    @Id
+    @GeneratedValue
+    private Long id;
+
+    @Column(length = 1024)
+    private String objectKey;
+
+    private Instant createdAt;
+}
@@ -9,7 +9,12 @@ import java.util.List;
 
 
 @Entity
-@Table(name = "Products")
+@Table(name = "Products", indexes = {
+        // Filtro por categoría + paginación por cursor ordenada por código
+        @Index(name = "idx_products_categoria_codigo", columnList = "categoria, codigo"),
+        // ProductImageSweeper pregunta por cada imagen huérfana si algún producto aún la usa (existsByUrl)
+        @Index(name = "idx_products_url", columnList = "url")
+})
 @Data @AllArgsConstructor @NoArgsConstructor
 public class Product {
 
@@ -32,6 +37,10 @@ public class Product {
     @Schema(description = "URL de la imagen del producto.", example = "https://brigams.pe/wp-content/uploads/chocolate-2.jpg")
     private String url;
 
+    @Enumerated(EnumType.STRING)
+    @Schema(description = "Estado de la subida de la imagen (null en productos sin imagen gestionada).", example = "READY")
+    private ImageStatus imageStatus;
+
     /* Detalles de compra donde aparece el producto */
     @OneToMany(mappedBy = "product", fetch = FetchType.LAZY)
     @Schema(description = "Lista de detalles de compra que incluyen el producto.", hidden = true)
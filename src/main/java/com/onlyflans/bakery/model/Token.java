@@ -6,11 +6,18 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.Instant;
+
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity(name="tokens")
+@Table(indexes = {
+        // Índices de la purga (TokenPurgeJob): una consulta por cada predicado
+        @Index(name = "idx_tokens_expires_at", columnList = "expiresAt"),
+        @Index(name = "idx_tokens_revoked", columnList = "revoked")
+})
 public class Token {
     public enum TokenType {
         BEARER
@@ -20,7 +27,13 @@ public class Token {
     @GeneratedValue
     public Long id;
 
-    @Column(unique = true)
+    // SHA-256 del JWT (32 bytes): clave de búsqueda de ancho fijo, mucho más pequeña que el token completo
+    @Column(name = "token_hash", unique = true, length = 32)
+    public byte[] tokenHash;
+
+    /* Columna heredada con el JWT completo; solo se mantiene para migrar filas antiguas a token_hash.
+    * Su índice único de los esquemas existentes lo elimina TokenHashMigration al iniciar */
+    @Column(length = 1024)
     public String token;
 
     @Enumerated(EnumType.STRING)
@@ -30,6 +43,9 @@ public class Token {
 
     public boolean expired;
 
+    // Instante en que vence el JWT (claim exp), permite purgar los tokens vencidos
+    public Instant expiresAt;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name="user_id")
     public User user;
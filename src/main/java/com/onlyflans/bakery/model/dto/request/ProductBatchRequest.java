@@ -0,0 +1,14 @@
+package com.onlyflans.bakery.model.dto.request;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record ProductBatchRequest(
+    @NotEmpty(message = "Debe indicar al menos un código")
+    @Size(max = 100, message = "No se pueden consultar más de 100 códigos por petición")
+    @Schema(description = "Códigos de producto a consultar.", example = "[\"TC001\", \"TC002\"]")
+    List<String> codigos
+) {}
@@ -0,0 +1,10 @@
+package com.onlyflans.bakery.model.dto.request;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+
+public record ProductImageConfirmRequest(
+    @NotBlank(message = "La key es obligatoria")
+    @Schema(description = "Key devuelta por upload-url.", example = "assets/img/uploads/TC001/0b6f1c3e-5d7a-4c8e-9f11-2a4b6c8d0e12.png")
+    String key
+) {}
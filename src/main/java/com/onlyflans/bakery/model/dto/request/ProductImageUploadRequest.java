@@ -0,0 +1,28 @@
+package com.onlyflans.bakery.model.dto.request;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+
+public record ProductImageUploadRequest(
+    @NotBlank(message = "El nombre del archivo es obligatorio")
+    @Schema(description = "Nombre del archivo original (se usa su extensión).", example = "torta-chocolate.png")
+    String fileName,
+
+    @NotBlank(message = "El tipo de contenido es obligatorio")
+    @Schema(description = "Tipo MIME de la imagen (image/png, image/jpeg o image/webp).", example = "image/png")
+    String contentType,
+
+    @NotNull(message = "El tamaño es obligatorio")
+    @Min(value = 1, message = "El archivo está vacío")
+    @Schema(description = "Tamaño exacto del archivo en bytes (máximo 5 MB).", example = "245760")
+    Long size,
+
+    @NotBlank(message = "El SHA-256 del archivo es obligatorio")
+    @Pattern(regexp = "^[A-Za-z0-9+/]{43}=$", message = "El SHA-256 debe ir en Base64 (32 bytes)")
+    @Schema(description = "SHA-256 del archivo en Base64, como en la cabecera x-amz-checksum-sha256. "
+            + "S3 rechaza el PUT si el contenido no coincide.", example = "47DEQpj8HBSa+/TImW+5JCeuQeRkm5NMpJWZG3hSuFU=")
+    String sha256
+) {}
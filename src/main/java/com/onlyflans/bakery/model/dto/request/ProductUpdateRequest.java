@@ -1,5 +1,6 @@
 package com.onlyflans.bakery.model.dto.request;
 
+import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -21,7 +22,9 @@ public record ProductUpdateRequest(
     @Min(value = 1, message = "El precio debe ser positivo")
     Integer precio,
 
-    @NotBlank(message = "La URL de la imagen es obligatoria")
+    // Opcional: sin url (o con la parte 'file') se conserva la imagen actual
+    @Size(max = 255)
+    @Schema(description = "Nueva URL de la imagen. Si se omite se conserva la actual.", example = "https://brigams.pe/wp-content/uploads/chocolate-2.jpg")
     String url
 
 ){}
\ No newline at end of file
@@ -1,10 +1,13 @@
 package com.onlyflans.bakery.model.dto.response;
 
 import lombok.Data;
+import lombok.NoArgsConstructor;
+
 import java.time.LocalDate;
 import java.util.List;
 
 @Data
+@NoArgsConstructor
 public class OrderDTO {
     private String id;
     private LocalDate fecha;
@@ -12,4 +15,13 @@ public class OrderDTO {
     private Integer total;
     private String rutUsuario; // solo el rut
     private List<OrderDetailDTO> orderDetails;
+
+    // Para las consultas con proyección; los detalles se cargan aparte
+    public OrderDTO(String id, LocalDate fecha, String estado, Integer total, String rutUsuario) {
+        this.id = id;
+        this.fecha = fecha;
+        this.estado = estado;
+        this.total = total;
+        this.rutUsuario = rutUsuario;
+    }
 }
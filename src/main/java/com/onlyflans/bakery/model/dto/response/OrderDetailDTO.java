@@ -1,8 +1,12 @@
 package com.onlyflans.bakery.model.dto.response;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 @Data
+@NoArgsConstructor
+@AllArgsConstructor // usado por las consultas con proyección
 public class OrderDetailDTO {
     private String id;
     private String orderId;
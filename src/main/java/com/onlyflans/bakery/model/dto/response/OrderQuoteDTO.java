@@ -0,0 +1,11 @@
+package com.onlyflans.bakery.model.dto.response;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class OrderQuoteDTO {
+    private List<OrderQuoteLineDTO> items;
+    private Integer total;
+}
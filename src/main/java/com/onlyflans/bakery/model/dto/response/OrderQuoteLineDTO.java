@@ -0,0 +1,12 @@
+package com.onlyflans.bakery.model.dto.response;
+
+import lombok.Data;
+
+@Data
+public class OrderQuoteLineDTO {
+    private String productoCodigo;
+    private String nombre;
+    private Integer precioUnitario;
+    private Integer cantidad;
+    private Integer subtotal;
+}
@@ -0,0 +1,12 @@
+package com.onlyflans.bakery.model.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class PriceBucketDTO {
+    private Integer desde; // inclusivo
+    private Integer hasta; // inclusivo en el último tramo, exclusivo en los demás
+    private long cantidad;
+}
@@ -0,0 +1,11 @@
+package com.onlyflans.bakery.model.dto.response;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class ProductBatchDTO {
+    private List<ProductDTO> items; // en el mismo orden de la petición
+    private List<String> notFound;  // códigos que no existen
+}
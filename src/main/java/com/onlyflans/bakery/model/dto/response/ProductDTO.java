@@ -1,8 +1,11 @@
 package com.onlyflans.bakery.model.dto.response;
 
+import com.onlyflans.bakery.model.ImageStatus;
 import lombok.*;
 
 @Setter @Getter
+@NoArgsConstructor
+@AllArgsConstructor // usado por las consultas con proyección (select new ...ProductDTO(...))
 public class ProductDTO {
     private String codigo;
     private String categoria;
@@ -10,4 +13,5 @@ public class ProductDTO {
     private String descripcion;
     private Integer precio;
     private String url;
+    private ImageStatus imageStatus;
 }
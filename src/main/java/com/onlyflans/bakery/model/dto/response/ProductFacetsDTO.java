@@ -0,0 +1,15 @@
+package com.onlyflans.bakery.model.dto.response;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class ProductFacetsDTO {
+    private long total;
+    private Map<String, Long> categorias; // categoria -> cantidad de productos
+    private Integer precioMin;
+    private Integer precioMax;
+    private List<PriceBucketDTO> histograma;
+}
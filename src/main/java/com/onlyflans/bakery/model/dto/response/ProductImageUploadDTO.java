@@ -0,0 +1,15 @@
+package com.onlyflans.bakery.model.dto.response;
+
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.Map;
+
+@Data
+public class ProductImageUploadDTO {
+    private String key; // se envía de vuelta en /image/confirm
+    private String uploadUrl;
+    private String method;
+    private Map<String, String> headers; // cabeceras firmadas que el cliente debe enviar tal cual
+    private Instant expiresAt;
+}
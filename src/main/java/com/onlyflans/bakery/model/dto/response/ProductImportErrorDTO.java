@@ -0,0 +1,12 @@
+package com.onlyflans.bakery.model.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ProductImportErrorDTO {
+    private long linea;
+    private String codigo; // null si la fila no se pudo leer
+    private String mensaje;
+}
@@ -0,0 +1,15 @@
+package com.onlyflans.bakery.model.dto.response;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ProductImportResultDTO {
+    private long filasLeidas;
+    private long creados;
+    private long actualizados;
+    private long filasConError;
+    private List<ProductImportErrorDTO> errores = new ArrayList<>(); // detalle, hasta un máximo de filas
+}
@@ -0,0 +1,12 @@
+package com.onlyflans.bakery.model.dto.response;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class ProductPageDTO {
+    private List<ProductDTO> items;
+    private String nextCursor; // codigo del último producto de la página, null si no hay más
+    private boolean hasMore;
+}
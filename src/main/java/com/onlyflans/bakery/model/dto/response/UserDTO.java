@@ -1,10 +1,14 @@
 package com.onlyflans.bakery.model.dto.response;
 
+import com.onlyflans.bakery.model.UserRole;
 import lombok.Data;
+import lombok.NoArgsConstructor;
+
 import java.time.LocalDate;
 import java.util.List;
 
 @Data
+@NoArgsConstructor
 public class UserDTO {
     private String rut;
     private String nombres;
@@ -13,4 +17,14 @@ public class UserDTO {
     private String email;
     private String userRole;
     private List<OrderSummaryDTO> orders;
+
+    // Para las consultas con proyección; las órdenes se cargan aparte
+    public UserDTO(String rut, String nombres, String apellidos, LocalDate fechaNacimiento, String email, UserRole userRole) {
+        this.rut = rut;
+        this.nombres = nombres;
+        this.apellidos = apellidos;
+        this.fechaNacimiento = fechaNacimiento;
+        this.email = email;
+        this.userRole = userRole != null ? userRole.name() : null;
+    }
 }
@@ -16,6 +16,7 @@ public class ProductMapper {
         dto.setDescripcion(product.getDescripcion());
         dto.setPrecio(product.getPrecio());
         dto.setUrl(product.getUrl());
+        dto.setImageStatus(product.getImageStatus());
 
         return dto;
     }
@@ -0,0 +1,32 @@
+package com.onlyflans.bakery.persistence;
+
+import com.onlyflans.bakery.model.ImageUploadTask;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface IImageUploadTaskPersistence extends JpaRepository<ImageUploadTask, Long> {
+
+    /* Tareas vencidas que esta instancia puede tomar, las más antiguas primero: las suyas, las anteriores
+    * a nodeId (null) y las de cualquier instancia que dejó de atenderlas (vencidas antes de staleBefore) */
+    @Query("select t from ImageUploadTask t where t.nextAttemptAt <= :now " +
+            "and (t.nodeId = :nodeId or t.nodeId is null or t.nextAttemptAt <= :staleBefore) " +
+            "order by t.nextAttemptAt asc")
+    List<ImageUploadTask> findDueTasks(@Param("nodeId") String nodeId, @Param("now") Instant now,
+                                       @Param("staleBefore") Instant staleBefore, Limit limit);
+
+    /* Toma la tarea por un lease: corre nextAttemptAt hasta leaseUntil solo si nadie la tomó
+    * desde que se leyó. Devuelve 1 a una sola instancia; sin SELECT FOR UPDATE ni SKIP LOCKED */
+    @Modifying
+    @Query("update ImageUploadTask t set t.nextAttemptAt = :leaseUntil where t.id = :id and t.nextAttemptAt = :seen")
+    int claim(@Param("id") Long id, @Param("seen") Instant seen, @Param("leaseUntil") Instant leaseUntil);
+
+    List<ImageUploadTask> findByProductoCodigo(String productoCodigo);
+}
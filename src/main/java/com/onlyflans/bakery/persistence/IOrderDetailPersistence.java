@@ -1,9 +1,27 @@
 package com.onlyflans.bakery.persistence;
 
 import com.onlyflans.bakery.model.OrderDetail;
+import com.onlyflans.bakery.model.dto.response.OrderDetailDTO;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
 
 @Repository
 public interface IOrderDetailPersistence extends JpaRepository<OrderDetail, String> {
+
+    String ORDER_DETAIL_DTO = "select new com.onlyflans.bakery.model.dto.response.OrderDetailDTO("
+            + "d.id, o.id, p.codigo, p.nombre, d.cantidad, d.subtotal) "
+            + "from OrderDetail d join d.order o left join d.product p";
+
+    @Transactional(readOnly = true)
+    @Query(ORDER_DETAIL_DTO)
+    List<OrderDetailDTO> findAllAsDTO();
+
+    @Transactional(readOnly = true)
+    @Query(ORDER_DETAIL_DTO + " where o.id = :orderId")
+    List<OrderDetailDTO> findDTOsByOrderId(@Param("orderId") String orderId);
 }
@@ -1,9 +1,38 @@
 package com.onlyflans.bakery.persistence;
 
 import com.onlyflans.bakery.model.Order;
+import com.onlyflans.bakery.model.dto.response.OrderDTO;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface IOrderPersistence extends JpaRepository<Order, String> {
+
+    /* Proyección de la orden sin sus detalles (ver IOrderDetailPersistence).
+    * Se usa el nombre calificado de la entidad porque ORDER es palabra reservada en JPQL */
+    String ORDER_DTO = "select new com.onlyflans.bakery.model.dto.response.OrderDTO("
+            + "o.id, o.fecha, o.estado, o.total, u.rut) from com.onlyflans.bakery.model.Order o left join o.user u";
+
+    @Transactional(readOnly = true)
+    @Query(ORDER_DTO)
+    List<OrderDTO> findAllAsDTO();
+
+    @Transactional(readOnly = true)
+    @Query(ORDER_DTO + " where o.id = :id")
+    Optional<OrderDTO> findDTOById(@Param("id") String id);
+
+    // Order.user admite null: las órdenes sin usuario no tienen a quién asignarse en GET /users
+    @Transactional(readOnly = true)
+    @Query("select o.id as id, o.estado as estado, o.total as total, o.user.rut as rutUsuario from com.onlyflans.bakery.model.Order o where o.user is not null")
+    List<OrderSummaryView> findAllSummaries();
+
+    @Transactional(readOnly = true)
+    @Query("select o.id as id, o.estado as estado, o.total as total, o.user.rut as rutUsuario from com.onlyflans.bakery.model.Order o where o.user.rut = :rut")
+    List<OrderSummaryView> findSummariesByRut(@Param("rut") String rut);
 }
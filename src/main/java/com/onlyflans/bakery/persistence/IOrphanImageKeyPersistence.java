@@ -0,0 +1,29 @@
+package com.onlyflans.bakery.persistence;
+
+import com.onlyflans.bakery.model.OrphanImageKey;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface IOrphanImageKeyPersistence extends JpaRepository<OrphanImageKey, Long> {
+
+    // Huérfanos registrados antes del tiempo de gracia, los más antiguos primero
+    List<OrphanImageKey> findByCreatedAtLessThanEqualOrderByCreatedAtAsc(Instant before, Limit limit);
+
+    /* El barrido bloquea la fila mientras decide si borra el objeto: quien vuelva a usar
+    * la key (deleteByObjectKey) espera a que termine */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select o from OrphanImageKey o where o.id = :id")
+    Optional<OrphanImageKey> lockById(@Param("id") Long id);
+
+    long deleteByObjectKey(String objectKey);
+}
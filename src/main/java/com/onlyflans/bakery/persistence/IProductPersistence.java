@@ -1,9 +1,55 @@
 package com.onlyflans.bakery.persistence;
 
 import com.onlyflans.bakery.model.Product;
+import com.onlyflans.bakery.model.dto.response.ProductDTO;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface IProductPersistence extends JpaRepository<Product, String> {
+
+    /* Lecturas con proyección: se seleccionan las columnas directo al DTO, sin entidades
+    * administradas (ni snapshot para dirty checking ni colecciones lazy) y en sesión de solo lectura */
+    String PRODUCT_DTO = "select new com.onlyflans.bakery.model.dto.response.ProductDTO("
+            + "p.codigo, p.categoria, p.nombre, p.descripcion, p.precio, p.url, p.imageStatus) from Product p";
+
+    @Transactional(readOnly = true)
+    @Query(PRODUCT_DTO + " where p.codigo = :codigo")
+    Optional<ProductDTO> findDTOByCodigo(@Param("codigo") String codigo);
+
+    // Relectura de varios productos en una consulta (eventos de cambio de la importación masiva)
+    @Transactional(readOnly = true)
+    @Query(PRODUCT_DTO + " where p.codigo in :codigos")
+    List<ProductDTO> findDTOsByCodigoIn(@Param("codigos") Collection<String> codigos);
+
+    /* Paginación por cursor (keyset) ordenada por codigo: cada página parte desde el último
+    * código entregado en vez de usar OFFSET, y no se ejecuta COUNT(*).
+    * Con Limit.unlimited() devuelve el catálogo completo ordenado */
+    @Transactional(readOnly = true)
+    @Query(PRODUCT_DTO + " order by p.codigo")
+    List<ProductDTO> findPage(Limit limit);
+
+    @Transactional(readOnly = true)
+    @Query(PRODUCT_DTO + " where p.codigo > :cursor order by p.codigo")
+    List<ProductDTO> findPageAfter(@Param("cursor") String cursor, Limit limit);
+
+    // Usan el índice compuesto (categoria, codigo)
+    @Transactional(readOnly = true)
+    @Query(PRODUCT_DTO + " where p.categoria = :categoria order by p.codigo")
+    List<ProductDTO> findPageByCategoria(@Param("categoria") String categoria, Limit limit);
+
+    @Transactional(readOnly = true)
+    @Query(PRODUCT_DTO + " where p.categoria = :categoria and p.codigo > :cursor order by p.codigo")
+    List<ProductDTO> findPageByCategoriaAfter(@Param("categoria") String categoria, @Param("cursor") String cursor, Limit limit);
+
+    // Si algún producto sigue usando la imagen (las keys direccionadas por contenido se comparten)
+    boolean existsByUrl(String url);
 }
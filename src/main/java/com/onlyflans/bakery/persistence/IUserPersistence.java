@@ -1,9 +1,14 @@
 package com.onlyflans.bakery.persistence;
 
 import com.onlyflans.bakery.model.User;
+import com.onlyflans.bakery.model.dto.response.UserDTO;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,4 +16,16 @@ public interface IUserPersistence extends JpaRepository<User, String> {
     Optional<User> findByEmail(String email);
 
     //Optional<User> findByName(String userEmail); //Username para SpringSecurity corresponde al email
+
+    // Proyección sin contraseña ni órdenes (los resúmenes de órdenes salen de IOrderPersistence)
+    String USER_DTO = "select new com.onlyflans.bakery.model.dto.response.UserDTO("
+            + "u.rut, u.nombres, u.apellidos, u.fechaNacimiento, u.email, u.userRole) from User u";
+
+    @Transactional(readOnly = true)
+    @Query(USER_DTO)
+    List<UserDTO> findAllAsDTO();
+
+    @Transactional(readOnly = true)
+    @Query(USER_DTO + " where u.rut = :rut")
+    Optional<UserDTO> findDTOByRut(@Param("rut") String rut);
 }
@@ -0,0 +1,9 @@
+package com.onlyflans.bakery.persistence;
+
+/* Proyección por interfaz: solo las columnas del resumen de orden que se muestra junto a cada usuario */
+public interface OrderSummaryView {
+    String getId();
+    String getEstado();
+    Integer getTotal();
+    String getRutUsuario();
+}
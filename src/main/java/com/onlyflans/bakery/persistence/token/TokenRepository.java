@@ -1,14 +1,53 @@
 package com.onlyflans.bakery.persistence.token;
 
 import com.onlyflans.bakery.model.Token;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface TokenRepository extends JpaRepository<Token, Long> {
+    Optional<Token> findByTokenHash(byte[] tokenHash);
+
+    // Solo para filas antiguas que aún guardan el JWT completo (ver TokenHashMigration)
     Optional<Token> findByToken(String token);
-    List<Token> findAllValidIsFalseOrRevokedIsFalseByUserRut(String id);
+
+    List<Token> findByTokenHashIsNullAndTokenIsNotNull(Pageable pageable);
+
+    // Revoca todos los tokens vigentes del usuario con un único UPDATE
+    @Transactional
+    @Modifying
+    @Query("update tokens t set t.expired = true, t.revoked = true " +
+            "where t.user.rut = :rut and (t.expired = false or t.revoked = false)")
+    int revokeAllByUserRut(@Param("rut") String rut);
+
+    /* Ids de tokens que ya no sirven, para purgarlos por lotes. Son dos consultas y no un OR
+    * para que cada una use su índice (idx_tokens_revoked / idx_tokens_expires_at).
+    * Toda revocación marca revoked y expired juntos, así basta con revoked */
+    @Query("select t.id from tokens t where t.revoked = true")
+    List<Long> findRevokedIds(Pageable pageable);
+
+    @Query("select t.id from tokens t where t.expiresAt < :now")
+    List<Long> findExpiredIds(@Param("now") Instant now, Pageable pageable);
+
+    // Filas antiguas marcadas solo como expired: se alinean con revoked para la purga
+    @Transactional
+    @Modifying
+    @Query("update tokens t set t.revoked = true where t.expired = true and t.revoked = false")
+    int revokeExpiredLegacyTokens();
+
+    /* Filas antiguas ya migradas a token_hash sin expiresAt (el JWT completo ya no está):
+    * se les asigna la vida máxima de un token, después de la cual la purga las elimina */
+    @Transactional
+    @Modifying
+    @Query("update tokens t set t.expiresAt = :bound where t.expiresAt is null and t.token is null")
+    int boundMissingExpiration(@Param("bound") Instant bound);
 }
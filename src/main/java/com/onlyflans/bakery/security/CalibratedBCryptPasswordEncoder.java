@@ -0,0 +1,86 @@
+package com.onlyflans.bakery.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Encoder BCrypt cuyo costo se calibra al iniciar la aplicación según un tiempo objetivo
+ * de verificación. Verifica hashes de cualquier costo, pero marca para re-hash
+ * (upgradeEncoding) los hashes guardados con un costo menor al calibrado. Nunca se baja el costo:
+ * nodos que calibran distinto no re-hashean a los mismos usuarios una y otra vez.
+ */
+@Slf4j
+public class CalibratedBCryptPasswordEncoder implements PasswordEncoder {
+
+    private static final Pattern BCRYPT_PATTERN = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}");
+    private static final String CALIBRATION_PASSWORD = "calibracion-onlyflans";
+    // Mediciones por costo: se toma la mediana, tras una verificación de calentamiento (JIT)
+    private static final int CALIBRATION_RUNS = 5;
+
+    private final BCryptPasswordEncoder delegate;
+    private final int strength;
+
+    public CalibratedBCryptPasswordEncoder(int strength) {
+        this.delegate = new BCryptPasswordEncoder(strength);
+        this.strength = strength;
+    }
+
+    /**
+     * Busca el mayor costo dentro de [minCost, maxCost] cuya verificación no supere targetMs.
+     * Nunca baja de minCost aunque el hardware sea lento.
+     */
+    public static CalibratedBCryptPasswordEncoder calibrate(long targetMs, int minCost, int maxCost) {
+        int cost = minCost;
+        while (cost < maxCost && measureVerificationMs(cost + 1) <= targetMs) {
+            cost++;
+        }
+        log.info("Costo de BCrypt calibrado en {} (objetivo {} ms, rango {}-{})", cost, targetMs, minCost, maxCost);
+        return new CalibratedBCryptPasswordEncoder(cost);
+    }
+
+    private static long measureVerificationMs(int cost) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(cost);
+        String hash = encoder.encode(CALIBRATION_PASSWORD);
+        encoder.matches(CALIBRATION_PASSWORD, hash); // calentamiento, no se mide
+
+        long[] samples = new long[CALIBRATION_RUNS];
+        for (int i = 0; i < samples.length; i++) {
+            long start = System.nanoTime();
+            encoder.matches(CALIBRATION_PASSWORD, hash);
+            samples[i] = (System.nanoTime() - start) / 1_000_000;
+        }
+        Arrays.sort(samples);
+        return samples[samples.length / 2];
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return delegate.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return delegate.matches(rawPassword, encodedPassword);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_PATTERN.matcher(encodedPassword);
+        if (!matcher.matches()) {
+            return false;
+        }
+        return Integer.parseInt(matcher.group(1)) < strength;
+    }
+}
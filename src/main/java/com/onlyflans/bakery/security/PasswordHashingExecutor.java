@@ -0,0 +1,134 @@
+package com.onlyflans.bakery.security;
+
+import com.onlyflans.bakery.exception.TooManyRequestsException;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Pool acotado para el hashing y la verificación de contraseñas (BCrypt).
+ * Limita cuántos núcleos puede usar una ráfaga de logins/registros y cuántas peticiones
+ * pueden quedar esperando: si la cola está llena se rechaza de inmediato con 429.
+ */
+@Component
+public class PasswordHashingExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final long retryAfterSeconds;
+
+    private final TimingStats queueWait = new TimingStats();
+    private final TimingStats hashTime = new TimingStats();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public PasswordHashingExecutor(
+            @Value("${application.security.password.hashing-threads:0}") int threads,
+            @Value("${application.security.password.queue-capacity:64}") int queueCapacity,
+            @Value("${application.security.password.retry-after-seconds:1}") long retryAfterSeconds
+    ) {
+        // Por defecto se reserva la mitad de los núcleos para el resto de la API
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadNumber = new AtomicInteger();
+
+        this.executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Ejecuta la tarea en el pool y espera su resultado.
+     * @throws TooManyRequestsException si el pool y su cola están llenos
+     */
+    public <T> T execute(Supplier<T> task) {
+        final long enqueuedAt = System.nanoTime();
+        final Future<T> future;
+
+        try {
+            future = executor.submit(() -> {
+                final long startedAt = System.nanoTime();
+                queueWait.record(startedAt - enqueuedAt);
+                try {
+                    return task.get();
+                } finally {
+                    hashTime.record(System.nanoTime() - startedAt);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            rejected.incrementAndGet();
+            throw new TooManyRequestsException(
+                    "Demasiadas solicitudes de autenticación, intente nuevamente en unos segundos",
+                    retryAfterSeconds
+            );
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Hashing de contraseña interrumpido", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        return Map.of(
+                "poolSize", executor.getMaximumPoolSize(),
+                "active", executor.getActiveCount(),
+                "queued", executor.getQueue().size(),
+                "rejected", rejected.get(),
+                "queueWait", queueWait.snapshot(),
+                "hashTime", hashTime.snapshot()
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // Acumulador simple de tiempos (cantidad, promedio y máximo en milisegundos)
+    private static final class TimingStats {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        Map<String, Object> snapshot() {
+            long samples = count.get();
+            return Map.of(
+                    "count", samples,
+                    "avgMs", samples == 0 ? 0.0 : totalNanos.get() / (double) samples / 1_000_000,
+                    "maxMs", maxNanos.get() / 1_000_000.0
+            );
+        }
+    }
+}
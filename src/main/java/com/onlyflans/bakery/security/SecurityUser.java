@@ -14,6 +14,11 @@ public class SecurityUser implements UserDetails {
 
     private final User user;
 
+    // Entidad cargada durante la autenticación, se reutiliza para no volver a consultarla
+    public User getUser() {
+        return user;
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         // Convierte el rol en autoridad (ROLE_...)
@@ -0,0 +1,34 @@
+package com.onlyflans.bakery.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Utilidad para obtener el digest SHA-256 de un token JWT.
+ * Se usa como clave de tamaño fijo en lugar del token completo.
+ */
+public final class TokenDigest {
+
+    private TokenDigest() {
+    }
+
+    public static byte[] sha256(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.US_ASCII));
+        } catch (NoSuchAlgorithmException e) {
+            // Todas las JVM deben soportar SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String sha256Hex(String token) {
+        return hex(sha256(token));
+    }
+
+    public static String hex(byte[] digest) {
+        return HexFormat.of().formatHex(digest);
+    }
+}
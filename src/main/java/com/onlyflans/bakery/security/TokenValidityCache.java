@@ -0,0 +1,154 @@
+package com.onlyflans.bakery.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache acotado en memoria del estado (vigente / revocado) de los tokens,
+ * indexado por el digest SHA-256 del token. Cada entrada expira junto con el claim exp del JWT.
+ * La base de datos sigue siendo la fuente de verdad: si una entrada se descarta,
+ * la siguiente petición vuelve a consultar la tabla tokens.
+ */
+@Component
+public class TokenValidityCache {
+
+    private record Entry(String rut, boolean active, long expiresAt) {
+        boolean isExpired(long now) {
+            return expiresAt <= now;
+        }
+    }
+
+    private final int maxEntries;
+    // Cada barrido deja el cache en este tamaño: los siguientes put no vuelven a barrer hasta llenarlo otra vez
+    private final int evictTo;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> digestsByRut = new ConcurrentHashMap<>();
+
+    /* Se incrementa en cada revocación; evita que una lectura de BD anterior
+    * a la revocación vuelva a dejar el token como vigente en el cache */
+    private final AtomicLong revocationStamp = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public TokenValidityCache(@Value("${application.security.token-cache.max-entries:10000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.evictTo = maxEntries - Math.max(1, maxEntries / 10);
+    }
+
+    /**
+     * @return TRUE si el token está vigente, FALSE si está revocado o null si no está en cache.
+     */
+    public Boolean get(String digest) {
+        Entry entry = entries.get(digest);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (entry.isExpired(System.currentTimeMillis())) {
+            remove(digest, entry);
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.active();
+    }
+
+    public long stamp() {
+        return revocationStamp.get();
+    }
+
+    /**
+     * Guarda el estado leído desde la BD, salvo que haya ocurrido una revocación
+     * desde que se tomó el stamp.
+     */
+    public void put(long stamp, String digest, String rut, boolean active, long expiresAt) {
+        if (active && stamp != revocationStamp.get()) {
+            return;
+        }
+        if (entries.size() >= maxEntries) {
+            evict();
+        }
+        entries.put(digest, new Entry(rut, active, expiresAt));
+        if (rut != null) {
+            digestsByRut.computeIfAbsent(rut, key -> ConcurrentHashMap.newKeySet()).add(digest);
+        }
+        if (active && stamp != revocationStamp.get()) {
+            entries.remove(digest);
+        }
+    }
+
+    public void markRevoked(String digest) {
+        revocationStamp.incrementAndGet();
+        entries.computeIfPresent(digest, (key, entry) -> new Entry(entry.rut(), false, entry.expiresAt()));
+    }
+
+    public void markAllRevoked(String rut) {
+        markAllRevoked(rut, Set.of());
+    }
+
+    // Igual que markAllRevoked(rut), salvo los digests indicados (tokens emitidos después de la revocación)
+    public void markAllRevoked(String rut, Set<String> except) {
+        revocationStamp.incrementAndGet();
+        Set<String> digests = digestsByRut.get(rut);
+        if (digests == null) {
+            return;
+        }
+        for (String digest : digests) {
+            if (!except.contains(digest)) {
+                entries.computeIfPresent(digest, (key, entry) -> new Entry(entry.rut(), false, entry.expiresAt()));
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /* Primero descarta las entradas expiradas; si no alcanza, descarta entradas cualesquiera
+    * hasta liberar un 10% de la capacidad. El recorrido es O(n), pero ocurre una vez
+    * cada maxEntries / 10 inserciones y no en cada miss */
+    private synchronized void evict() {
+        if (entries.size() < maxEntries) {
+            return; // otro hilo ya hizo el barrido
+        }
+        long now = System.currentTimeMillis();
+        entries.forEach((digest, entry) -> {
+            if (entry.isExpired(now)) {
+                remove(digest, entry);
+            }
+        });
+
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > evictTo && it.hasNext()) {
+            Map.Entry<String, Entry> next = it.next();
+            remove(next.getKey(), next.getValue());
+        }
+    }
+
+    private void remove(String digest, Entry entry) {
+        if (!entries.remove(digest, entry)) {
+            return;
+        }
+        if (entry.rut() != null) {
+            digestsByRut.computeIfPresent(entry.rut(), (rut, digests) -> {
+                digests.remove(digest);
+                return digests.isEmpty() ? null : digests;
+            });
+        }
+    }
+}
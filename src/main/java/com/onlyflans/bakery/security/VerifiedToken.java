@@ -0,0 +1,25 @@
+package com.onlyflans.bakery.security;
+
+import java.util.Date;
+
+/**
+ * Resultado de verificar (firma + expiración) un JWT una sola vez.
+ * Se construye en JwtService y se pasa al filtro y a los servicios para
+ * no volver a parsear ni validar la firma del mismo token en la misma petición.
+ * @param token token original (sin el prefijo "Bearer ")
+ * @param subject email del usuario (claim sub)
+ * @param rut rut del usuario (claim jti)
+ * @param role rol del usuario (claim role)
+ * @param expiration fecha de expiración (claim exp)
+ */
+public record VerifiedToken(
+        String token,
+        String subject,
+        String rut,
+        String role,
+        Date expiration
+) {
+    public boolean isExpired() {
+        return expiration.before(new Date());
+    }
+}
@@ -1,32 +1,33 @@
 package com.onlyflans.bakery.service;
 
 import com.onlyflans.bakery.exception.InvalidTokenException;
-import com.onlyflans.bakery.model.Token;
 import com.onlyflans.bakery.model.User;
 import com.onlyflans.bakery.model.dto.TokenDTOResponse;
 import com.onlyflans.bakery.model.dto.request.LoginRequest;
 import com.onlyflans.bakery.model.dto.request.UserCreateRequest;
 import com.onlyflans.bakery.persistence.IUserPersistence;
-import com.onlyflans.bakery.persistence.token.TokenRepository;
+import com.onlyflans.bakery.security.SecurityUser;
+import com.onlyflans.bakery.security.VerifiedToken;
+import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.util.List;
-
 @Service
 @RequiredArgsConstructor
 public class AuthService {
-    private final TokenRepository tokenRepository;
+    private final TokenService tokenService;
     private final JwtService jwtService;
     private final AuthenticationManager authenticationManager;
     private final IUserPersistence userEntityRepository;
     private final UserService userService;
 
+    @Transactional
     public TokenDTOResponse register(UserCreateRequest request){
         var user = userService.createUser(request);
         User savedUser = userEntityRepository.findById(user.getRut())
@@ -37,49 +38,27 @@ public class AuthService {
         var jwtToken = jwtService.generateToken(savedUser);
         var refreshToken = jwtService.generateRefreshToken(savedUser);
 
-        saveUserToken(savedUser, jwtToken);
+        tokenService.saveUserToken(savedUser, jwtToken);
         return new TokenDTOResponse(jwtToken, refreshToken);
     }
 
+    /* Sin transacción mientras se verifica la contraseña: BCrypt (y la espera en PasswordHashingExecutor)
+    * no retiene una conexión del pool. La entidad cargada al autenticar se reutiliza, y la revocación
+    * (UPDATE masivo) y el nuevo token (INSERT) se confirman juntos en una transacción corta de TokenService */
     public TokenDTOResponse login(LoginRequest request){
-        authenticationManager.authenticate(
+        final Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(
                         request.email(),
                         request.password()
                 )
         );
-        var user = userEntityRepository.findByEmail(request.email())
-                .orElseThrow();
+        final User user = ((SecurityUser) authentication.getPrincipal()).getUser();
         var jwtToken = jwtService.generateToken(user);
         var refreshToken = jwtService.generateRefreshToken(user);
-        revokeAllUserTokens(user);
-        saveUserToken(user, jwtToken);
+        tokenService.replaceUserTokens(user, jwtToken);
         return new TokenDTOResponse(jwtToken, refreshToken);
     }
 
-    public void saveUserToken(User user, String jwtToken){
-        var token = Token.builder()
-                .user(user)
-                .token(jwtToken)
-                .tokenType(Token.TokenType.BEARER)
-                .expired(false)
-                .revoked(false)
-                .build();
-        tokenRepository.save(token);
-    }
-
-    private void revokeAllUserTokens(final User user){
-        final List<Token> validUserTokens = tokenRepository
-                .findAllValidIsFalseOrRevokedIsFalseByUserRut(user.getRut()); //UserId
-        if(!validUserTokens.isEmpty()){
-            for(final Token token: validUserTokens){
-                token.setExpired(true);
-                token.setRevoked(true);
-            }
-            tokenRepository.saveAll(validUserTokens);
-        }
-    }
-
     public TokenDTOResponse refreshToken(final String authHeader){
         if(authHeader == null || !authHeader.startsWith("Bearer ")){
             throw new IllegalArgumentException("Token no es de tipo Bearer o no ha sido proporcionado");
@@ -87,7 +66,8 @@ public class AuthService {
 
         final String refreshToken = authHeader.substring(7);
 
-        final String userEmail = jwtService.extractUsername(refreshToken);
+        final VerifiedToken verifiedToken = jwtService.verify(refreshToken);
+        final String userEmail = verifiedToken.subject();
 
         if(userEmail == null){
             throw new IllegalArgumentException("Refresh token no contiene un usuario válido");
@@ -96,30 +76,19 @@ public class AuthService {
         final User user = userEntityRepository.findByEmail(userEmail)
                 .orElseThrow( () -> new UsernameNotFoundException(userEmail));
 
-        if(!jwtService.isTokenValid(refreshToken, user)){
+        if(!jwtService.isTokenValid(verifiedToken, user)){
             throw new InvalidTokenException("Refresh token no válido");
         }
 
         // Generar nuevo token de acceso
         final String newAccessToken = jwtService.generateToken(user);
 
-        revokeAllUserTokens(user);
-        saveUserToken(user, newAccessToken);
+        tokenService.replaceUserTokens(user, newAccessToken);
         return new TokenDTOResponse(newAccessToken, refreshToken);
     }
 
     public void logout(final String authHeader) {
         String token = authHeader.substring(7);
-
-        Token storedToken = tokenRepository.findByToken(token)
-                .orElseThrow(() -> new InvalidTokenException("Token no válido"));
-
-        if (storedToken.isExpired() || storedToken.isRevoked()) {
-            throw new InvalidTokenException("Token ya se encuentra expirado o revocado");
-        }
-
-        storedToken.setExpired(true);
-        storedToken.setRevoked(true);
-        tokenRepository.save(storedToken);
+        tokenService.revokeToken(token);
     }
 }
@@ -0,0 +1,78 @@
+package com.onlyflans.bakery.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Guarda el catálogo ya serializado a JSON y comprimido con gzip para la versión actual
+ * del snapshot. Solo se serializa/comprime una vez por versión; el resto de las peticiones
+ * escribe los mismos arreglos de bytes directo a la respuesta.
+ */
+@Component
+public class CatalogResponseCache {
+
+    /**
+     * @param version versión del snapshot serializado
+     * @param etag ETag de esa versión
+     * @param json cuerpo JSON sin comprimir
+     * @param gzip el mismo cuerpo comprimido con gzip
+     */
+    public record Rendered(long version, String etag, byte[] json, byte[] gzip) {
+    }
+
+    private final ObjectMapper objectMapper;
+
+    private volatile Rendered rendered;
+
+    public CatalogResponseCache(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public Rendered render(ProductCatalogCache.Snapshot snapshot) {
+        Rendered current = rendered;
+        if (current != null && current.version() == snapshot.version()) {
+            return current;
+        }
+        return renderSynchronized(snapshot);
+    }
+
+    // Una sola serialización por versión aunque lleguen muchas peticiones a la vez
+    private synchronized Rendered renderSynchronized(ProductCatalogCache.Snapshot snapshot) {
+        Rendered current = rendered;
+        if (current != null && current.version() == snapshot.version()) {
+            return current;
+        }
+
+        Rendered built = build(snapshot);
+        // Un snapshot más antiguo (carrera con un cambio recién confirmado) no reemplaza al cacheado
+        if (current == null || current.version() < snapshot.version()) {
+            rendered = built;
+        }
+        return built;
+    }
+
+    private Rendered build(ProductCatalogCache.Snapshot snapshot) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(snapshot.products());
+            return new Rendered(snapshot.version(), snapshot.etag(), json, gzip(json));
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("No se pudo serializar el catálogo de productos", ex);
+        }
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return out.toByteArray();
+    }
+}
@@ -1,7 +1,11 @@
 package com.onlyflans.bakery.service;
 
 import com.onlyflans.bakery.model.User;
+import com.onlyflans.bakery.security.VerifiedToken;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
@@ -9,21 +13,36 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
+import java.time.Instant;
 import java.util.Date;
 import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
 
 @Service
 public class JwtService {
 
-    @Value("${application.security.jwt.secret-key}")
-    private String secretKey;
-
-    @Value("${application.security.jwt.expiration}")
-    private long jwtExpiration;
-
-    @Value("${application.security.jwt.refresh-token.expiration}")
-    private long refreshExpiration;
-
+    private final long jwtExpiration;
+
+    private final long refreshExpiration;
+
+    /* La clave y el parser son inmutables y thread-safe: se construyen una sola vez
+    * en lugar de decodificar el secreto Base64 y armar un parser en cada llamada */
+    private final SecretKey signKey;
+    private final JwtParser parser;
+
+    public JwtService(
+            @Value("${application.security.jwt.secret-key}") String secretKey,
+            @Value("${application.security.jwt.expiration}") long jwtExpiration,
+            @Value("${application.security.jwt.refresh-token.expiration}") long refreshExpiration
+    ) {
+        this.jwtExpiration = jwtExpiration;
+        this.refreshExpiration = refreshExpiration;
+        this.signKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
+        this.parser = Jwts.parser()
+                .verifyWith(signKey)
+                .build();
+    }
 
     public String generateToken(final User user){
         return buildToken(user, jwtExpiration);
@@ -36,14 +55,30 @@ public class JwtService {
     public String buildToken(final User user, final Long expiration){
         return Jwts.builder()
                 .id(user.getRut()) //user.getId().toString()
-                .claims(Map.of("role", user.getUserRole())) //user.getName()
+                // nonce: dos tokens emitidos en el mismo segundo (iat/exp) no deben dar el mismo digest
+                .claims(Map.of("role", user.getUserRole(), "nonce", UUID.randomUUID().toString())) //user.getName()
                 .subject(user.getEmail())
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSignKey())
+                .signWith(signKey)
                 .compact();
     }
 
+    /**
+     * Verifica la firma y la expiración del token una única vez y devuelve sus claims.
+     * Lanza ExpiredJwtException o JwtException si el token no es válido.
+     */
+    public VerifiedToken verify(final String token){
+        final Claims claims = getClaims(token);
+        return new VerifiedToken(
+                token,
+                claims.getSubject(),
+                claims.getId(),
+                claims.get("role", String.class),
+                claims.getExpiration()
+        );
+    }
+
     public String extractUsername(final String token){
         return getClaims(token).getSubject();
     }
@@ -57,19 +92,37 @@ public class JwtService {
     }
 
     public boolean isTokenValid(final String token, final User user){
-        final String username = extractUsername(token);
-        return (username.equals(user.getEmail()) && !isTokenExpired(token));
+        return isTokenValid(verify(token), user);
+    }
+
+    public boolean isTokenValid(final VerifiedToken token, final User user){
+        return (token.subject().equals(user.getEmail()) && !token.isExpired());
+    }
+
+    /**
+     * Claim exp de un token firmado por esta aplicación, aunque ya esté vencido.
+     * Vacío si la firma no es válida o el token no se puede leer.
+     */
+    public Optional<Instant> readExpiration(final String token){
+        try {
+            return Optional.ofNullable(getClaims(token).getExpiration()).map(Date::toInstant);
+        } catch (ExpiredJwtException ex) {
+            return Optional.ofNullable(ex.getClaims().getExpiration()).map(Date::toInstant);
+        } catch (JwtException | IllegalArgumentException ex) {
+            return Optional.empty();
+        }
+    }
+
+    public long getRefreshExpiration() {
+        return refreshExpiration;
     }
 
     public SecretKey getSignKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
+        return signKey;
     }
 
     public Claims getClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSignKey())
-                .build()
+        return parser
                 .parseSignedClaims(token)
                 .getPayload();
     }
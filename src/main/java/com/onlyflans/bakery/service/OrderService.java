@@ -7,7 +7,12 @@ import com.onlyflans.bakery.model.User;
 import com.onlyflans.bakery.model.dto.request.OrderCreateRequest;
 import com.onlyflans.bakery.model.dto.request.OrderUpdateRequest;
 import com.onlyflans.bakery.model.dto.response.OrderDTO;
+import com.onlyflans.bakery.model.dto.response.OrderDetailDTO;
+import com.onlyflans.bakery.model.dto.response.OrderQuoteDTO;
+import com.onlyflans.bakery.model.dto.response.OrderQuoteLineDTO;
+import com.onlyflans.bakery.model.dto.response.ProductDTO;
 import com.onlyflans.bakery.model.mapper.OrderMapper;
+import com.onlyflans.bakery.persistence.IOrderDetailPersistence;
 import com.onlyflans.bakery.persistence.IOrderPersistence;
 import com.onlyflans.bakery.persistence.IProductPersistence;
 import com.onlyflans.bakery.persistence.IUserPersistence;
@@ -17,8 +22,11 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -29,33 +37,47 @@ public class OrderService {
     private final IOrderPersistence orderPersistence;
     private final IUserPersistence userPersistence;
     private final IProductPersistence productPersistence;
+    private final IOrderDetailPersistence orderDetailPersistence;
+    private final ProductCatalogCache productCatalogCache;
 
     public OrderService(IOrderPersistence orderPersistence,
                         IUserPersistence userPersistence,
-                        IProductPersistence productPersistence) {
+                        IProductPersistence productPersistence,
+                        IOrderDetailPersistence orderDetailPersistence,
+                        ProductCatalogCache productCatalogCache) {
         this.orderPersistence = orderPersistence;
         this.userPersistence = userPersistence;
         this.productPersistence = productPersistence;
+        this.orderDetailPersistence = orderDetailPersistence;
+        this.productCatalogCache = productCatalogCache;
     }
 
+    /*
+    * Lectura con proyecciones: una consulta para las órdenes y otra para todos los detalles,
+    * ambas directo a DTO. Antes se cargaban las entidades y cada orden disparaba consultas
+    * lazy para su usuario y sus detalles (N+1).
+    * */
+    @Transactional(Transactional.TxType.SUPPORTS)
     public List<OrderDTO> getAllOrders(){
-        /*
-        * orderPersistence.findAll() devuelve una List<Order> desde la base de datos.
-        * .stream() convierte esa lista en un flujo.
-        * .map(OrderMapper::toDTO) aplica el método OrderMapper.toDTO() a cada elemento (convierte de entidad a DTO).
-        * .toList() recopila el resultado final como una lista de OrderDTO.
-        * */
-        return orderPersistence.findAll().stream().map(OrderMapper::toDTO).toList();
+        Map<String, List<OrderDetailDTO>> detailsByOrder = orderDetailPersistence.findAllAsDTO()
+                .stream()
+                .collect(Collectors.groupingBy(OrderDetailDTO::getOrderId));
+
+        List<OrderDTO> orders = orderPersistence.findAllAsDTO();
+        orders.forEach(order -> order.setOrderDetails(detailsByOrder.getOrDefault(order.getId(), List.of())));
+        return orders;
     }
 
 
+    @Transactional(Transactional.TxType.SUPPORTS)
     public OrderDTO getOrder(String id){
-        Order order =  orderPersistence.findById(id)
+        OrderDTO order = orderPersistence.findDTOById(id)
                 .orElseThrow(() -> new ResponseStatusException(
                         HttpStatus.NOT_FOUND,
                         "Orden con ID '" + id + "' no encontrada"
                 ));
-        return OrderMapper.toDTO(order);
+        order.setOrderDetails(orderDetailPersistence.findDTOsByOrderId(id));
+        return order;
     }
 
     public OrderDTO createOrder(OrderCreateRequest request){
@@ -86,7 +108,7 @@ public class OrderService {
             detail.setOrder(order);
             detail.setProduct(product);
             detail.setCantidad(item.cantidad());
-            detail.setSubtotal(product.getPrecio() * item.cantidad());
+            detail.setSubtotal(lineSubtotal(product.getPrecio(), item.cantidad()));
             order.getOrderDetails().add(detail);
 
             total += detail.getSubtotal();
@@ -99,6 +121,54 @@ public class OrderService {
 
     }
 
+    /*
+    * Cotiza un carrito con las mismas reglas de precio que createOrder, pero sin persistir nada.
+    * Los precios salen del snapshot inmutable del catálogo (se reemplaza completo con cada cambio
+    * de producto), así que no se abre transacción ni se consulta la BD.
+    * */
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public OrderQuoteDTO quoteOrder(OrderCreateRequest request) {
+        if (request.items() == null || request.items().isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El carrito no tiene productos");
+        }
+
+        ProductCatalogCache.Snapshot catalog = productCatalogCache.snapshot();
+
+        List<OrderQuoteLineDTO> lines = new ArrayList<>(request.items().size());
+        int total = 0;
+        for (var item : request.items()) {
+            ProductDTO product = item.productoCodigo() == null ? null : catalog.find(item.productoCodigo());
+            if (product == null) {
+                throw new ResponseStatusException(
+                        HttpStatus.NOT_FOUND, "Producto con código '" + item.productoCodigo() + "' no encontrado"
+                );
+            }
+
+            OrderQuoteLineDTO line = new OrderQuoteLineDTO();
+            line.setProductoCodigo(product.getCodigo());
+            line.setNombre(product.getNombre());
+            line.setPrecioUnitario(product.getPrecio());
+            line.setCantidad(item.cantidad());
+            line.setSubtotal(lineSubtotal(product.getPrecio(), item.cantidad()));
+            lines.add(line);
+
+            total += line.getSubtotal();
+        }
+
+        OrderQuoteDTO quote = new OrderQuoteDTO();
+        quote.setItems(lines);
+        quote.setTotal(total);
+        return quote;
+    }
+
+    // Regla de precio de cada línea, compartida por createOrder y quoteOrder
+    private static int lineSubtotal(Integer precio, Integer cantidad) {
+        if (cantidad == null || cantidad < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "La cantidad debe ser al menos 1");
+        }
+        return precio * cantidad;
+    }
+
     public OrderDTO updateOrder(String id, OrderUpdateRequest request) {
         Order order = orderPersistence.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(
@@ -0,0 +1,170 @@
+package com.onlyflans.bakery.service;
+
+import com.onlyflans.bakery.model.dto.response.ProductDTO;
+import com.onlyflans.bakery.persistence.IProductPersistence;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.Ordered;
+import org.springframework.data.domain.Limit;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Snapshot inmutable y versionado del catálogo de productos.
+ * Se carga una vez desde la BD y luego se reemplaza atómicamente (copy-on-write)
+ * cada vez que ProductService confirma un cambio. Las lecturas no usan locks ni la BD.
+ * Los eventos solo llegan a la instancia que hizo el cambio: con varias instancias, cada una
+ * compara su snapshot con la BD cada refresh-ms y publica un ProductChangedEvent con los códigos
+ * que difieren, así los cambios hechos en otra instancia se ven con ese retraso máximo.
+ */
+@Slf4j
+@Component
+public class ProductCatalogCache {
+
+    /**
+     * @param version versión del catálogo, aumenta con cada cambio
+     * @param etag ETag fuerte derivado de la versión
+     * @param products productos ordenados por código
+     * @param byCodigo los mismos productos indexados por código
+     */
+    public record Snapshot(
+            long version,
+            String etag,
+            List<ProductDTO> products,
+            NavigableMap<String, ProductDTO> byCodigo
+    ) {
+        public ProductDTO find(String codigo) {
+            return byCodigo.get(codigo);
+        }
+    }
+
+    private static final int REFRESH_CHUNK = 500;
+
+    private final IProductPersistence productPersistence;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Distingue las versiones entre reinicios, para que un ETag antiguo nunca coincida por accidente
+    private final String instanceId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong versions = new AtomicLong();
+
+    private volatile Snapshot snapshot;
+
+    public ProductCatalogCache(IProductPersistence productPersistence, ApplicationEventPublisher eventPublisher) {
+        this.productPersistence = productPersistence;
+        this.eventPublisher = eventPublisher;
+    }
+
+    public Snapshot snapshot() {
+        Snapshot current = snapshot;
+        return current != null ? current : load();
+    }
+
+    // El snapshot actual solo si ya fue cargado (no consulta la BD)
+    public Snapshot loadedSnapshot() {
+        return snapshot;
+    }
+
+    /* load y onProductChanged se sincronizan sobre el mismo monitor: un cambio confirmado
+    * mientras se carga el catálogo se aplica después de la carga y nunca se pierde */
+    private synchronized Snapshot load() {
+        if (snapshot == null) {
+            TreeMap<String, ProductDTO> byCodigo = new TreeMap<>();
+            productPersistence.findPage(Limit.unlimited()).forEach(product -> byCodigo.put(product.getCodigo(), product));
+            snapshot = build(byCodigo);
+        }
+        return snapshot;
+    }
+
+    /*
+    * Corre antes que los demás oyentes de ProductChangedEvent, que leen el producto desde este snapshot.
+    * No se aplica el DTO que trae el evento: dos cambios al mismo producto pueden confirmarse en un orden
+    * y llegar aquí en el otro, y el más antiguo quedaría en el snapshot. Se relee la fila confirmada
+    * dentro del monitor, así el último oyente en correr siempre deja el estado más reciente.
+    * Todos los códigos del evento se releen en una consulta y se aplican con una sola copia del mapa.
+    * */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onProductChanged(ProductChangedEvent event) {
+        if (snapshot == null) {
+            return; // se verá en la primera carga
+        }
+
+        Map<String, ProductDTO> current = productPersistence.findDTOsByCodigoIn(event.codigos()).stream()
+                .collect(Collectors.toMap(ProductDTO::getCodigo, Function.identity()));
+        TreeMap<String, ProductDTO> byCodigo = new TreeMap<>(snapshot.byCodigo());
+        for (String codigo : event.codigos()) {
+            ProductDTO product = current.get(codigo);
+            if (product == null) {
+                byCodigo.remove(codigo);
+            } else {
+                byCodigo.put(codigo, product);
+            }
+        }
+        snapshot = build(byCodigo);
+    }
+
+    /* Lee el catálogo fuera del monitor y publica solo los códigos distintos: el evento pasa por
+    * onProductChanged (que relee esas filas) y por el resto de los oyentes, igual que un cambio local.
+    * Si no hay diferencias no se crea una versión nueva y el ETag se mantiene */
+    @Scheduled(
+            initialDelayString = "${application.products.catalog.refresh-ms:30000}",
+            fixedDelayString = "${application.products.catalog.refresh-ms:30000}"
+    )
+    public void refresh() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return; // se cargará completo en la primera lectura
+        }
+
+        List<String> changed = new ArrayList<>();
+        TreeMap<String, ProductDTO> removed = new TreeMap<>(current.byCodigo());
+        for (ProductDTO product : productPersistence.findPage(Limit.unlimited())) {
+            if (!sameProduct(removed.remove(product.getCodigo()), product)) {
+                changed.add(product.getCodigo());
+            }
+        }
+        changed.addAll(removed.keySet());
+
+        if (!changed.isEmpty()) {
+            log.debug("Catálogo: {} productos cambiados en la BD desde otra instancia", changed.size());
+            // Por tramos: cada evento se relee con un IN (Oracle admite hasta 1000 valores)
+            for (int from = 0; from < changed.size(); from += REFRESH_CHUNK) {
+                eventPublisher.publishEvent(ProductChangedEvent.savedAll(
+                        changed.subList(from, Math.min(from + REFRESH_CHUNK, changed.size()))));
+            }
+        }
+    }
+
+    private static boolean sameProduct(ProductDTO cached, ProductDTO stored) {
+        return cached != null
+                && Objects.equals(cached.getCategoria(), stored.getCategoria())
+                && Objects.equals(cached.getNombre(), stored.getNombre())
+                && Objects.equals(cached.getDescripcion(), stored.getDescripcion())
+                && Objects.equals(cached.getPrecio(), stored.getPrecio())
+                && Objects.equals(cached.getUrl(), stored.getUrl())
+                && cached.getImageStatus() == stored.getImageStatus();
+    }
+
+    private Snapshot build(TreeMap<String, ProductDTO> byCodigo) {
+        long version = versions.incrementAndGet();
+        return new Snapshot(
+                version,
+                "\"" + instanceId + "-" + version + "\"",
+                List.copyOf(byCodigo.values()),
+                Collections.unmodifiableNavigableMap(byCodigo)
+        );
+    }
+}
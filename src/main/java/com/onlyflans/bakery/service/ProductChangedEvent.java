@@ -0,0 +1,30 @@
+package com.onlyflans.bakery.service;
+
+import com.onlyflans.bakery.model.dto.response.ProductDTO;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Evento que se publica cuando uno o más productos se crean, actualizan o eliminan.
+ * Los componentes en memoria (catálogo, índices, agregados) lo escuchan después del commit.
+ * Solo lleva los códigos: los eventos de dos transacciones pueden llegar en otro orden que sus
+ * commits, así que ProductCatalogCache relee las filas confirmadas y el resto lee desde su snapshot.
+ * La importación masiva publica un solo evento por tramo, que se aplica con una sola reconstrucción.
+ * @param codigos códigos de los productos afectados
+ */
+public record ProductChangedEvent(
+        List<String> codigos
+) {
+    public static ProductChangedEvent saved(ProductDTO product) {
+        return new ProductChangedEvent(List.of(product.getCodigo()));
+    }
+
+    public static ProductChangedEvent deleted(String codigo) {
+        return new ProductChangedEvent(List.of(codigo));
+    }
+
+    public static ProductChangedEvent savedAll(Collection<String> codigos) {
+        return new ProductChangedEvent(List.copyOf(codigos));
+    }
+}
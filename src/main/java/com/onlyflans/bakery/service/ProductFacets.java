@@ -0,0 +1,139 @@
+package com.onlyflans.bakery.service;
+
+import com.onlyflans.bakery.model.dto.response.PriceBucketDTO;
+import com.onlyflans.bakery.model.dto.response.ProductDTO;
+import com.onlyflans.bakery.model.dto.response.ProductFacetsDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Agregados del catálogo para los filtros de la tienda: cantidad por categoría
+ * y mínimo, máximo e histograma de precios.
+ * Se guardan los contadores y, por cada producto, su categoría y precio actuales;
+ * así un alta, cambio o baja solo ajusta contadores, sin recorrer la tabla Products.
+ * Cada cambio deja listo un ProductFacetsDTO que las peticiones devuelven tal cual.
+ */
+@Component
+public class ProductFacets {
+
+    private record Entry(String categoria, Integer precio) {
+    }
+
+    private final ProductCatalogCache productCatalogCache;
+    private final int histogramBuckets;
+
+    private final Map<String, Entry> byCodigo = new HashMap<>();
+    private final Map<String, Long> countByCategoria = new TreeMap<>();
+    // precio -> cantidad de productos con ese precio (mínimo y máximo son la primera y última clave)
+    private final TreeMap<Integer, Long> countByPrecio = new TreeMap<>();
+
+    private volatile ProductFacetsDTO facets;
+
+    public ProductFacets(
+            ProductCatalogCache productCatalogCache,
+            @Value("${application.products.facets.histogram-buckets:10}") int histogramBuckets
+    ) {
+        this.productCatalogCache = productCatalogCache;
+        this.histogramBuckets = Math.max(1, histogramBuckets);
+    }
+
+    public ProductFacetsDTO getFacets() {
+        ProductFacetsDTO current = facets;
+        return current != null ? current : build();
+    }
+
+    private synchronized ProductFacetsDTO build() {
+        if (facets == null) {
+            productCatalogCache.snapshot().products().forEach(this::add);
+            facets = render();
+        }
+        return facets;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onProductChanged(ProductChangedEvent event) {
+        if (facets == null) {
+            return; // se calcula completo en la primera petición
+        }
+        // Estado ya confirmado, según lo dejó ProductCatalogCache (oyente que corre antes)
+        ProductCatalogCache.Snapshot catalog = productCatalogCache.snapshot();
+        for (String codigo : event.codigos()) {
+            remove(codigo);
+            ProductDTO product = catalog.find(codigo);
+            if (product != null) {
+                add(product);
+            }
+        }
+        facets = render();
+    }
+
+    private void add(ProductDTO product) {
+        Entry entry = new Entry(product.getCategoria(), product.getPrecio());
+        byCodigo.put(product.getCodigo(), entry);
+        if (entry.categoria() != null) {
+            countByCategoria.merge(entry.categoria(), 1L, Long::sum);
+        }
+        if (entry.precio() != null) {
+            countByPrecio.merge(entry.precio(), 1L, Long::sum);
+        }
+    }
+
+    private void remove(String codigo) {
+        Entry entry = byCodigo.remove(codigo);
+        if (entry == null) {
+            return;
+        }
+        if (entry.categoria() != null) {
+            countByCategoria.computeIfPresent(entry.categoria(), (key, count) -> count > 1 ? count - 1 : null);
+        }
+        if (entry.precio() != null) {
+            countByPrecio.computeIfPresent(entry.precio(), (key, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    private ProductFacetsDTO render() {
+        ProductFacetsDTO dto = new ProductFacetsDTO();
+        dto.setTotal(byCodigo.size());
+        dto.setCategorias(Collections.unmodifiableMap(new LinkedHashMap<>(countByCategoria)));
+
+        if (countByPrecio.isEmpty()) {
+            dto.setHistograma(List.of());
+            return dto;
+        }
+
+        int min = countByPrecio.firstKey();
+        int max = countByPrecio.lastKey();
+        dto.setPrecioMin(min);
+        dto.setPrecioMax(max);
+        dto.setHistograma(histogram(min, max));
+        return dto;
+    }
+
+    // Tramos de igual ancho entre el precio mínimo y el máximo
+    private List<PriceBucketDTO> histogram(int min, int max) {
+        long range = (long) max - min + 1;
+        long width = (range + histogramBuckets - 1) / histogramBuckets;
+        // Con el ancho redondeado hacia arriba pueden bastar menos tramos (ninguno queda sobre el máximo)
+        int buckets = (int) ((range + width - 1) / width);
+
+        long[] counts = new long[buckets];
+        countByPrecio.forEach((precio, count) -> counts[(int) ((precio - (long) min) / width)] += count);
+
+        List<PriceBucketDTO> histogram = new ArrayList<>(buckets);
+        for (int i = 0; i < buckets; i++) {
+            long desde = min + i * width;
+            long hasta = i == buckets - 1 ? max : desde + width;
+            histogram.add(new PriceBucketDTO((int) desde, (int) hasta, counts[i]));
+        }
+        return List.copyOf(histogram);
+    }
+}
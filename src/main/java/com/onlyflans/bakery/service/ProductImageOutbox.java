@@ -0,0 +1,343 @@
+package com.onlyflans.bakery.service;
+
+import com.onlyflans.bakery.model.ImageStatus;
+import com.onlyflans.bakery.model.ImageUploadTask;
+import com.onlyflans.bakery.model.Product;
+import com.onlyflans.bakery.model.mapper.ProductMapper;
+import com.onlyflans.bakery.persistence.IImageUploadTaskPersistence;
+import com.onlyflans.bakery.persistence.IProductPersistence;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Outbox de imágenes de producto. ProductService deja la imagen en el disco local (stage)
+ * y registra una ImageUploadTask en la misma transacción que el producto (imageStatus PENDING);
+ * así la transacción, y su conexión JDBC, nunca esperan a S3.
+ * Una tarea programada sube después las imágenes pendientes y actualiza url/imageStatus.
+ * Si la subida falla se reintenta con backoff exponencial; al agotar los intentos el producto
+ * queda en FAILED conservando la url anterior. Las imágenes se suben a keys derivadas del SHA-256
+ * del archivo: el mismo contenido no se sube dos veces y la imagen reemplazada queda registrada
+ * como huérfana para ProductImageSweeper.
+ * El directorio de staging es local: cada tarea guarda el nodeId de la instancia que preparó
+ * el archivo y cada instancia procesa solo las suyas. El id se configura o se genera una vez
+ * y se guarda en el staging, así que instancias con un staging compartido comparten el id
+ * (en contenedores el staging debe ser un volumen persistente, ver IMAGE_STAGING_DIR).
+ * Antes de procesar una tarea la instancia la toma por un lease (claim): dos instancias con el
+ * mismo id no suben la misma imagen a la vez. Una tarea cuyo dueño dejó de atenderla por más de
+ * stale-after-ms (p. ej. un contenedor reemplazado que perdió su staging) la toma cualquier
+ * instancia: la sube si ve el archivo o deja el producto en FAILED, nunca en PENDING para siempre.
+ */
+@Slf4j
+@Component
+public class ProductImageOutbox {
+
+    public record StagedImage(Path path, String contentType, String objectKey) {
+    }
+
+    private final IImageUploadTaskPersistence taskPersistence;
+    private final IProductPersistence productPersistence;
+    private final S3Service s3Service;
+    private final ProductImageSweeper productImageSweeper;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Path stagingDir;
+    private final String nodeId;
+    private final int batchSize;
+    private final long leaseMs;
+    private final long staleAfterMs;
+    private final int maxAttempts;
+    private final long baseBackoffMs;
+    private final long maxBackoffMs;
+
+    public ProductImageOutbox(
+            IImageUploadTaskPersistence taskPersistence,
+            IProductPersistence productPersistence,
+            S3Service s3Service,
+            ProductImageSweeper productImageSweeper,
+            TransactionTemplate transactionTemplate,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${application.products.image-outbox.staging-dir:${java.io.tmpdir}/onlyflans-images}") String stagingDir,
+            @Value("${application.products.image-outbox.node-id:}") String nodeId,
+            @Value("${application.products.image-outbox.batch-size:10}") int batchSize,
+            @Value("${application.products.image-outbox.lease-ms:120000}") long leaseMs,
+            @Value("${application.products.image-outbox.stale-after-ms:900000}") long staleAfterMs,
+            @Value("${application.products.image-outbox.max-attempts:8}") int maxAttempts,
+            @Value("${application.products.image-outbox.base-backoff-ms:2000}") long baseBackoffMs,
+            @Value("${application.products.image-outbox.max-backoff-ms:300000}") long maxBackoffMs
+    ) {
+        this.taskPersistence = taskPersistence;
+        this.productPersistence = productPersistence;
+        this.s3Service = s3Service;
+        this.productImageSweeper = productImageSweeper;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.stagingDir = Path.of(stagingDir);
+        this.nodeId = nodeId.isBlank() ? stagingNodeId(this.stagingDir) : nodeId.trim();
+        this.batchSize = Math.max(1, batchSize);
+        this.leaseMs = leaseMs;
+        // Un dueño activo renueva el lease antes de que venza: solo una tarea abandonada queda tan atrasada
+        this.staleAfterMs = Math.max(staleAfterMs, leaseMs);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseBackoffMs = baseBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    // Id guardado en el directorio de staging; la primera instancia que lo usa lo genera
+    private static String stagingNodeId(Path stagingDir) {
+        Path file = stagingDir.resolve(".node-id");
+        try {
+            Files.createDirectories(stagingDir);
+            try {
+                Files.writeString(file, UUID.randomUUID().toString(), StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW);
+            } catch (FileAlreadyExistsException ignored) {
+                // ya generado por esta u otra instancia
+            }
+            return Files.readString(file, StandardCharsets.UTF_8).trim();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("No se pudo leer el id de nodo de " + file, ex);
+        }
+    }
+
+    /**
+     * Valida la imagen con las mismas reglas de S3Service y la copia al directorio de staging
+     * calculando el SHA-256 en la misma pasada (en streaming, sin cargarla en el heap);
+     * el hash define la key de destino en S3.
+     * Si la transacción en curso se revierte, el archivo se borra.
+     */
+    public StagedImage stage(MultipartFile file) throws IOException {
+        s3Service.validateFile(file);
+
+        String extension = S3Service.extractExtension(file.getOriginalFilename());
+        Files.createDirectories(stagingDir);
+        Path path = stagingDir.resolve(UUID.randomUUID() + extension);
+        afterCompletion(committed -> {
+            if (!committed) {
+                deleteStaged(path.toString());
+            }
+        });
+
+        MessageDigest sha256 = S3Service.newSha256();
+        try (InputStream content = new DigestInputStream(file.getInputStream(), sha256)) {
+            Files.copy(content, path);
+        }
+        String objectKey = S3Service.contentImageKey(HexFormat.of().formatHex(sha256.digest()), extension);
+        return new StagedImage(path, file.getContentType(), objectKey);
+    }
+
+    /* Registra la subida en la transacción del producto. Una imagen anterior aún pendiente
+    * del mismo producto queda reemplazada por esta */
+    public void enqueue(String codigo, StagedImage image) {
+        List<ImageUploadTask> previous = discardTasks(codigo);
+
+        Instant now = Instant.now();
+        ImageUploadTask task = new ImageUploadTask();
+        task.setProductoCodigo(codigo);
+        task.setNodeId(nodeId);
+        task.setStagedPath(image.path().toString());
+        task.setContentType(image.contentType());
+        task.setObjectKey(image.objectKey());
+        task.setNextAttemptAt(now);
+        task.setCreatedAt(now);
+        taskPersistence.save(task);
+
+        log.debug("Imagen de '{}' en cola para subir ({} pendientes reemplazadas)", codigo, previous.size());
+    }
+
+    // Al eliminar un producto se descartan sus imágenes pendientes
+    public void cancel(String codigo) {
+        discardTasks(codigo);
+    }
+
+    private List<ImageUploadTask> discardTasks(String codigo) {
+        List<ImageUploadTask> tasks = taskPersistence.findByProductoCodigo(codigo);
+        if (!tasks.isEmpty()) {
+            taskPersistence.deleteAll(tasks);
+            afterCompletion(committed -> {
+                if (committed) {
+                    tasks.forEach(task -> deleteStaged(task.getStagedPath()));
+                }
+            });
+        }
+        return tasks;
+    }
+
+    @Scheduled(
+            initialDelayString = "${application.products.image-outbox.initial-delay-ms:5000}",
+            fixedDelayString = "${application.products.image-outbox.interval-ms:1000}"
+    )
+    public void processDueTasks() {
+        Instant now = Instant.now();
+        List<ImageUploadTask> due = taskPersistence
+                .findDueTasks(nodeId, now, now.minusMillis(staleAfterMs), Limit.of(batchSize))
+                .stream()
+                .filter(task -> claim(task, now))
+                .toList();
+        if (due.isEmpty()) {
+            return;
+        }
+
+        /* Las subidas del lote corren en paralelo en el cliente asíncrono; luego se aplica cada resultado.
+        * Si el objeto ya existe en S3 (mismo contenido) se omite el PUT */
+        Map<ImageUploadTask, CompletableFuture<Boolean>> uploads = new LinkedHashMap<>();
+        for (ImageUploadTask task : due) {
+            Path path = Path.of(task.getStagedPath());
+            if (!Files.exists(path)) {
+                giveUp(task, "El archivo preparado ya no existe: " + path);
+                continue;
+            }
+            try {
+                uploads.put(task, s3Service.uploadIfAbsentAsync(path, task.getObjectKey(), task.getContentType()));
+            } catch (RuntimeException ex) {
+                uploads.put(task, CompletableFuture.failedFuture(ex));
+            }
+        }
+
+        uploads.forEach((task, upload) -> {
+            try {
+                complete(task, S3Service.await(upload));
+            } catch (RuntimeException ex) {
+                retryOrGiveUp(task, ex);
+            }
+        });
+    }
+
+    // Si otra instancia ganó el UPDATE la tarea se omite en este ciclo
+    private boolean claim(ImageUploadTask task, Instant now) {
+        Instant leaseUntil = now.plusMillis(leaseMs);
+        Integer claimed = transactionTemplate.execute(status ->
+                taskPersistence.claim(task.getId(), task.getNextAttemptAt(), leaseUntil));
+        return claimed != null && claimed == 1;
+    }
+
+    private void complete(ImageUploadTask task, boolean uploaded) {
+        String key = task.getObjectKey();
+        String url = s3Service.publicUrl(key);
+
+        /* La key puede estar registrada como huérfana por otro producto: se reclama antes de usarla,
+        * en su propia transacción (si el barrido la tiene bloqueada, espera a que termine).
+        * Si se omitió el PUT, el barrido pudo borrar el objeto después del HEAD de la subida; se
+        * comprueba de nuevo, ya reclamada y fuera de la transacción, y si falta el reintento vuelve a subirlo */
+        transactionTemplate.executeWithoutResult(status -> productImageSweeper.reclaim(key));
+        if (!uploaded && !S3Service.await(s3Service.objectExistsAsync(key))) {
+            throw new IllegalStateException("El objeto " + key + " fue eliminado antes de confirmarse");
+        }
+
+        boolean applied = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            if (!taskPersistence.existsById(task.getId())) {
+                return false; // reemplazada por una imagen más nueva o producto eliminado
+            }
+            Product product = productPersistence.findById(task.getProductoCodigo()).orElse(null);
+            if (product == null) {
+                taskPersistence.deleteById(task.getId());
+                return false;
+            }
+
+            taskPersistence.deleteById(task.getId());
+            if (!url.equals(product.getUrl())) {
+                productImageSweeper.markOrphan(product.getUrl());
+            }
+            product.setUrl(url);
+            product.setImageStatus(ImageStatus.READY);
+            eventPublisher.publishEvent(ProductChangedEvent.saved(ProductMapper.toDTO(product)));
+            return true;
+        }));
+
+        /* Compensación: la key ya se reclamó; si nadie quedó usando el objeto vuelve a la lista
+        * de huérfanos y el barrido lo borrará (si otro producto lo usa, el barrido lo conserva) */
+        if (!applied) {
+            transactionTemplate.executeWithoutResult(status -> productImageSweeper.markOrphan(url));
+        }
+        deleteStaged(task.getStagedPath());
+    }
+
+    private void retryOrGiveUp(ImageUploadTask task, RuntimeException ex) {
+        int attempts = task.getAttempts() + 1;
+        if (attempts >= maxAttempts) {
+            log.error("Subida de la imagen de '{}' descartada tras {} intentos", task.getProductoCodigo(), attempts, ex);
+            giveUp(task, ex.getMessage());
+            return;
+        }
+
+        long backoffMs = Math.min(maxBackoffMs, baseBackoffMs << Math.min(attempts - 1, 20));
+        log.warn("Falló la subida de la imagen de '{}' (intento {}), reintento en {} ms",
+                task.getProductoCodigo(), attempts, backoffMs, ex);
+
+        transactionTemplate.executeWithoutResult(status -> taskPersistence.findById(task.getId()).ifPresent(current -> {
+            current.setAttempts(attempts);
+            current.setNextAttemptAt(Instant.now().plusMillis(backoffMs));
+            current.setLastError(truncate(ex.getMessage()));
+        }));
+    }
+
+    // Sin más reintentos: el producto queda en FAILED con la url que tenía (la imagen anterior o null)
+    private void giveUp(ImageUploadTask task, String reason) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!taskPersistence.existsById(task.getId())) {
+                return;
+            }
+            taskPersistence.deleteById(task.getId());
+            productPersistence.findById(task.getProductoCodigo()).ifPresent(product -> {
+                product.setImageStatus(ImageStatus.FAILED);
+                eventPublisher.publishEvent(ProductChangedEvent.saved(ProductMapper.toDTO(product)));
+            });
+        });
+        log.error("Imagen de '{}' marcada como FAILED: {}", task.getProductoCodigo(), reason);
+        deleteStaged(task.getStagedPath());
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() <= 1000 ? message : message.substring(0, 1000);
+    }
+
+    private static void deleteStaged(String path) {
+        try {
+            Files.deleteIfExists(Path.of(path));
+        } catch (IOException ex) {
+            log.warn("No se pudo borrar el archivo preparado {}", path, ex);
+        }
+    }
+
+    // Ejecuta la acción al terminar la transacción en curso (o de inmediato si no hay una)
+    private static void afterCompletion(Consumer<Boolean> action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.accept(true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                action.accept(status == STATUS_COMMITTED);
+            }
+        });
+    }
+}
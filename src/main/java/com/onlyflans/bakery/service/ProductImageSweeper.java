@@ -0,0 +1,106 @@
+package com.onlyflans.bakery.service;
+
+import com.onlyflans.bakery.model.OrphanImageKey;
+import com.onlyflans.bakery.persistence.IOrphanImageKeyPersistence;
+import com.onlyflans.bakery.persistence.IProductPersistence;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Limpieza de imágenes que ya no usa ningún producto.
+ * Con keys direccionadas por contenido un update no sobrescribe el objeto anterior y varios
+ * productos pueden compartir una key; por eso updateProduct/deleteProduct solo registran
+ * la key abandonada (markOrphan, en su misma transacción) y este barrido la borra de S3
+ * pasado el tiempo de gracia, si al momento de borrar ningún producto la referencia.
+ */
+@Slf4j
+@Component
+public class ProductImageSweeper {
+
+    private final IOrphanImageKeyPersistence orphanPersistence;
+    private final IProductPersistence productPersistence;
+    private final S3Service s3Service;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration grace;
+    private final int batchSize;
+
+    public ProductImageSweeper(
+            IOrphanImageKeyPersistence orphanPersistence,
+            IProductPersistence productPersistence,
+            S3Service s3Service,
+            TransactionTemplate transactionTemplate,
+            @Value("${application.products.image-sweeper.grace-ms:86400000}") long graceMs,
+            @Value("${application.products.image-sweeper.batch-size:100}") int batchSize
+    ) {
+        this.orphanPersistence = orphanPersistence;
+        this.productPersistence = productPersistence;
+        this.s3Service = s3Service;
+        this.transactionTemplate = transactionTemplate;
+        this.grace = Duration.ofMillis(graceMs);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    // Registra la imagen que un producto deja de usar; las URLs externas al bucket se ignoran
+    public void markOrphan(String url) {
+        String key = s3Service.objectKey(url);
+        if (key == null) {
+            return;
+        }
+        OrphanImageKey orphan = new OrphanImageKey();
+        orphan.setObjectKey(key);
+        orphan.setCreatedAt(Instant.now());
+        orphanPersistence.save(orphan);
+    }
+
+    /* Quien vuelve a usar una key la saca de la lista de huérfanos antes de usarla.
+    * Si el barrido la tiene bloqueada, espera a que termine */
+    public void reclaim(String key) {
+        orphanPersistence.deleteByObjectKey(key);
+    }
+
+    @Scheduled(
+            initialDelayString = "${application.products.image-sweeper.initial-delay-ms:60000}",
+            fixedDelayString = "${application.products.image-sweeper.interval-ms:600000}"
+    )
+    public void sweep() {
+        List<OrphanImageKey> due = orphanPersistence
+                .findByCreatedAtLessThanEqualOrderByCreatedAtAsc(Instant.now().minus(grace), Limit.of(batchSize));
+
+        int deleted = 0;
+        for (OrphanImageKey candidate : due) {
+            try {
+                if (Boolean.TRUE.equals(transactionTemplate.execute(status -> sweepOne(candidate.getId())))) {
+                    deleted++;
+                }
+            } catch (RuntimeException ex) {
+                // La fila sigue ahí: se reintenta en el próximo barrido
+                log.warn("No se pudo borrar la imagen huérfana {}", candidate.getObjectKey(), ex);
+            }
+        }
+        if (!due.isEmpty()) {
+            log.info("Barrido de imágenes: {} huérfanas revisadas, {} borradas de S3", due.size(), deleted);
+        }
+    }
+
+    /* Se borra el objeto con la fila bloqueada: una subida que reutiliza la key (reclaim)
+    * queda esperando y, al seguir, comprueba que el objeto exista */
+    private boolean sweepOne(Long id) {
+        return orphanPersistence.lockById(id).map(orphan -> {
+            String key = orphan.getObjectKey();
+            boolean referenced = productPersistence.existsByUrl(s3Service.publicUrl(key));
+            if (!referenced) {
+                s3Service.deleteObject(key);
+            }
+            orphanPersistence.delete(orphan);
+            return !referenced;
+        }).orElse(false);
+    }
+}
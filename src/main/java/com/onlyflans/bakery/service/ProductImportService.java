@@ -0,0 +1,295 @@
+package com.onlyflans.bakery.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.onlyflans.bakery.model.Product;
+import com.onlyflans.bakery.model.dto.request.ProductCreateRequest;
+import com.onlyflans.bakery.model.dto.response.ProductImportErrorDTO;
+import com.onlyflans.bakery.model.dto.response.ProductImportResultDTO;
+import com.onlyflans.bakery.persistence.IProductPersistence;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Importación masiva de productos desde CSV o NDJSON.
+ * El cuerpo se lee línea a línea (nunca completo en memoria), cada fila se valida con las
+ * mismas restricciones de ProductCreateRequest y las filas válidas se insertan o actualizan
+ * por tramos, cada tramo en su propia transacción y con INSERT/UPDATE por lotes JDBC.
+ * No sube imágenes: los productos nuevos quedan sin url y la imagen se adjunta después
+ * con PUT /api/v1/products/{codigo}.
+ * Sin @Transactional a nivel de clase a propósito: una sola transacción para todo el
+ * archivo retendría miles de entidades en el contexto de persistencia.
+ */
+@Slf4j
+@Service
+public class ProductImportService {
+
+    public enum Format { CSV, NDJSON }
+
+    private static final List<String> CSV_COLUMNS = List.of("codigo", "categoria", "nombre", "descripcion", "precio");
+    // El resumen siempre cuenta todas las filas con error, pero el detalle se corta aquí
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private record Row(long linea, ProductCreateRequest request) {
+    }
+
+    private final IProductPersistence productPersistence;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int chunkSize;
+
+    public ProductImportService(
+            IProductPersistence productPersistence,
+            EntityManager entityManager,
+            TransactionTemplate transactionTemplate,
+            Validator validator,
+            ObjectMapper objectMapper,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${application.products.import.chunk-size:500}") int chunkSize
+    ) {
+        this.productPersistence = productPersistence;
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    public ProductImportResultDTO importProducts(InputStream body, Format format) throws IOException {
+        ProductImportResultDTO result = new ProductImportResultDTO();
+        List<Row> chunk = new ArrayList<>(chunkSize);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            long linea = 0;
+            if (format == Format.CSV) {
+                linea++;
+                checkCsvHeader(reader.readLine());
+            }
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                linea++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                result.setFilasLeidas(result.getFilasLeidas() + 1);
+
+                ProductCreateRequest request;
+                try {
+                    request = format == Format.CSV ? parseCsv(line) : parseJson(line);
+                } catch (IllegalArgumentException ex) {
+                    addError(result, linea, null, ex.getMessage());
+                    continue;
+                }
+
+                String violations = validate(request);
+                if (violations != null) {
+                    addError(result, linea, request.codigo(), violations);
+                    continue;
+                }
+
+                chunk.add(new Row(linea, request));
+                if (chunk.size() == chunkSize) {
+                    writeChunk(chunk, result);
+                    chunk.clear();
+                }
+            }
+        }
+
+        if (!chunk.isEmpty()) {
+            writeChunk(chunk, result);
+        }
+
+        log.info("Importación de productos: {} filas, {} creados, {} actualizados, {} con error",
+                result.getFilasLeidas(), result.getCreados(), result.getActualizados(), result.getFilasConError());
+        return result;
+    }
+
+    private void writeChunk(List<Row> chunk, ProductImportResultDTO result) {
+        // Si el mismo código aparece dos veces en el tramo, gana la última fila
+        Map<String, Row> byCodigo = new LinkedHashMap<>();
+        chunk.forEach(row -> byCodigo.put(row.request().codigo(), row));
+
+        try {
+            int[] counts = transactionTemplate.execute(status -> {
+                // Un solo SELECT para saber qué códigos ya existen en el tramo
+                Map<String, Product> existing = productPersistence.findAllById(byCodigo.keySet())
+                        .stream()
+                        .collect(Collectors.toMap(Product::getCodigo, Function.identity()));
+
+                int created = 0;
+                int updated = 0;
+                for (Row row : byCodigo.values()) {
+                    ProductCreateRequest request = row.request();
+                    Product product = existing.get(request.codigo());
+                    if (product == null) {
+                        product = new Product();
+                        product.setCodigo(request.codigo());
+                        apply(product, request);
+                        // persist y no save(): con id asignado save() haría merge y un SELECT por fila
+                        entityManager.persist(product);
+                        created++;
+                    } else {
+                        apply(product, request); // entidad administrada: el UPDATE sale en el flush
+                        updated++;
+                    }
+                }
+                // Un solo evento por tramo: los cachés releen y reconstruyen una vez, no una vez por fila
+                eventPublisher.publishEvent(ProductChangedEvent.savedAll(byCodigo.keySet()));
+
+                entityManager.flush();
+                entityManager.clear();
+                return new int[] { created, updated };
+            });
+
+            result.setCreados(result.getCreados() + counts[0]);
+            result.setActualizados(result.getActualizados() + counts[1]);
+        } catch (RuntimeException ex) {
+            // El tramo completo se revierte; se informa en cada una de sus filas
+            log.warn("Importación de productos: tramo rechazado por la base de datos", ex);
+            String mensaje = "Tramo rechazado por la base de datos: " + NestedExceptionUtils.getMostSpecificCause(ex).getMessage();
+            byCodigo.values().forEach(row -> addError(result, row.linea(), row.request().codigo(), mensaje));
+        }
+    }
+
+    private static void apply(Product product, ProductCreateRequest request) {
+        product.setCategoria(request.categoria());
+        product.setNombre(request.nombre());
+        product.setDescripcion(request.descripcion());
+        product.setPrecio(request.precio());
+    }
+
+    private String validate(ProductCreateRequest request) {
+        Set<ConstraintViolation<ProductCreateRequest>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    private static void addError(ProductImportResultDTO result, long linea, String codigo, String mensaje) {
+        result.setFilasConError(result.getFilasConError() + 1);
+        if (result.getErrores().size() < MAX_REPORTED_ERRORS) {
+            result.getErrores().add(new ProductImportErrorDTO(linea, codigo, mensaje));
+        }
+    }
+
+    private ProductCreateRequest parseJson(String line) {
+        ProductCreateRequest request;
+        try {
+            request = objectMapper.readValue(line, ProductCreateRequest.class);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("JSON inválido: " + ex.getOriginalMessage());
+        }
+        // Una línea "null" se lee como null: es un error de la fila, no de toda la importación
+        if (request == null) {
+            throw new IllegalArgumentException("Se esperaba un objeto JSON con el producto");
+        }
+        return request;
+    }
+
+    private static void checkCsvHeader(String header) {
+        if (header == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El archivo CSV está vacío");
+        }
+        List<String> columns = splitCsv(header.replace("\uFEFF", "")).stream()
+                .map(column -> column.trim().toLowerCase())
+                .toList();
+        if (!columns.equals(CSV_COLUMNS)) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "La cabecera del CSV debe ser: " + String.join(",", CSV_COLUMNS)
+            );
+        }
+    }
+
+    private static ProductCreateRequest parseCsv(String line) {
+        List<String> fields = splitCsv(line);
+        if (fields.size() != CSV_COLUMNS.size()) {
+            throw new IllegalArgumentException(
+                    "Se esperaban " + CSV_COLUMNS.size() + " columnas y se encontraron " + fields.size()
+            );
+        }
+
+        Integer precio;
+        String rawPrecio = fields.get(4).trim();
+        try {
+            precio = rawPrecio.isEmpty() ? null : Integer.valueOf(rawPrecio);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Precio inválido: '" + rawPrecio + "'");
+        }
+
+        return new ProductCreateRequest(
+                emptyToNull(fields.get(0).trim()),
+                fields.get(1).trim(),
+                fields.get(2).trim(),
+                emptyToNull(fields.get(3).trim()),
+                precio
+        );
+    }
+
+    // CSV de una línea por fila: separador coma, campos opcionalmente entre comillas y "" para una comilla
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Comillas sin cerrar");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+}
@@ -0,0 +1,62 @@
+package com.onlyflans.bakery.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache negativo de corta duración para códigos de producto que no existen.
+ * Evita que una ráfaga de peticiones por un código aún no creado consulte la BD en cada una.
+ * Una entrada se borra apenas se confirma un alta o cambio de ese código.
+ */
+@Component
+public class ProductNotFoundCache {
+
+    private final long ttlNanos;
+    private final int maxEntries;
+
+    // codigo -> instante (System.nanoTime) en que vence la entrada
+    private final Map<String, Long> expiresAt = new ConcurrentHashMap<>();
+
+    public ProductNotFoundCache(
+            @Value("${application.products.not-found-cache.ttl-ms:5000}") long ttlMs,
+            @Value("${application.products.not-found-cache.max-entries:10000}") int maxEntries
+    ) {
+        this.ttlNanos = ttlMs * 1_000_000;
+        this.maxEntries = maxEntries;
+    }
+
+    public boolean isMissing(String codigo) {
+        Long deadline = expiresAt.get(codigo);
+        if (deadline == null) {
+            return false;
+        }
+        if (System.nanoTime() - deadline >= 0) {
+            expiresAt.remove(codigo, deadline);
+            return false;
+        }
+        return true;
+    }
+
+    public void markMissing(String codigo) {
+        if (ttlNanos <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (expiresAt.size() >= maxEntries) {
+            expiresAt.values().removeIf(deadline -> now - deadline >= 0);
+            if (expiresAt.size() >= maxEntries) {
+                return; // lleno de entradas vigentes: no se cachea (p. ej. barrido de códigos al azar)
+            }
+        }
+        expiresAt.put(codigo, now + ttlNanos);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        event.codigos().forEach(expiresAt::remove);
+    }
+}
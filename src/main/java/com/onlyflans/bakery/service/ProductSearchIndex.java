@@ -0,0 +1,233 @@
+package com.onlyflans.bakery.service;
+
+import com.onlyflans.bakery.model.dto.response.ProductDTO;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * Índice invertido en memoria sobre nombre y descripción de los productos.
+ * Los términos se normalizan (minúsculas, sin tildes, plural simple en español) y se guardan
+ * ordenados, así el último término de la búsqueda también funciona como prefijo (typeahead).
+ * Se construye desde el snapshot del catálogo y luego se actualiza producto a producto
+ * con ProductChangedEvent, sin volver a consultar la BD.
+ */
+@Component
+public class ProductSearchIndex {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^a-z0-9]+");
+
+    // Una coincidencia en el nombre pesa más que una en la descripción
+    private static final float NOMBRE_WEIGHT = 3.0f;
+    private static final float DESCRIPCION_WEIGHT = 1.0f;
+    // Un término que solo coincide por prefijo puntúa menos que uno exacto
+    private static final float PREFIX_FACTOR = 0.5f;
+    // Máximo de términos a los que se expande un prefijo (evita recorrer medio diccionario con "a")
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private final ProductCatalogCache productCatalogCache;
+
+    // término -> (codigo -> peso del término en ese producto)
+    private final ConcurrentSkipListMap<String, Map<String, Float>> postings = new ConcurrentSkipListMap<>();
+    // codigo -> términos indexados, para poder quitar un producto
+    private final Map<String, Set<String>> termsByCodigo = new ConcurrentHashMap<>();
+
+    private volatile boolean built;
+
+    public ProductSearchIndex(ProductCatalogCache productCatalogCache) {
+        this.productCatalogCache = productCatalogCache;
+    }
+
+    /**
+     * Busca productos cuyo nombre o descripción contenga todos los términos de la consulta.
+     * @return códigos ordenados por relevancia (tf-idf), como máximo limit
+     */
+    public List<String> search(String query, int limit) {
+        ensureBuilt();
+
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty()) {
+            return List.of();
+        }
+
+        int documents = Math.max(1, termsByCodigo.size());
+        Map<String, Float> scores = null;
+
+        for (int i = 0; i < tokens.size(); i++) {
+            boolean last = i == tokens.size() - 1;
+            Map<String, Float> tokenScores = scoreToken(tokens.get(i), last, documents);
+
+            if (scores == null) {
+                scores = tokenScores;
+            } else {
+                // Todos los términos deben aparecer (AND)
+                Map<String, Float> previous = scores;
+                Map<String, Float> combined = new HashMap<>();
+                tokenScores.forEach((codigo, score) -> {
+                    Float current = previous.get(codigo);
+                    if (current != null) {
+                        combined.put(codigo, current + score);
+                    }
+                });
+                scores = combined;
+            }
+            if (scores.isEmpty()) {
+                return List.of();
+            }
+        }
+
+        return topCodigos(scores, limit);
+    }
+
+    private Map<String, Float> scoreToken(String token, boolean allowPrefix, int documents) {
+        Map<String, Float> scores = new HashMap<>();
+
+        Map<String, Float> exact = postings.get(token);
+        if (exact != null) {
+            addScores(scores, exact, idf(documents, exact.size()));
+        }
+
+        // Solo el último término se trata como prefijo: es el que el usuario está escribiendo
+        if (allowPrefix) {
+            int expansions = 0;
+            for (Map.Entry<String, Map<String, Float>> entry : postings.tailMap(token, false).entrySet()) {
+                if (!entry.getKey().startsWith(token) || expansions++ == MAX_PREFIX_EXPANSIONS) {
+                    break;
+                }
+                Map<String, Float> docs = entry.getValue();
+                addScores(scores, docs, idf(documents, docs.size()) * PREFIX_FACTOR);
+            }
+        }
+        return scores;
+    }
+
+    private static void addScores(Map<String, Float> scores, Map<String, Float> docs, float idf) {
+        docs.forEach((codigo, weight) -> scores.merge(codigo, weight * idf, Float::sum));
+    }
+
+    private static float idf(int documents, int documentFrequency) {
+        return (float) Math.log(1.0 + (double) documents / Math.max(1, documentFrequency));
+    }
+
+    // Top-k con un heap de tamaño limit en lugar de ordenar todos los resultados
+    private static List<String> topCodigos(Map<String, Float> scores, int limit) {
+        Comparator<Map.Entry<String, Float>> byScore = Map.Entry.<String, Float>comparingByValue()
+                .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder()));
+
+        PriorityQueue<Map.Entry<String, Float>> heap = new PriorityQueue<>(limit + 1, byScore);
+        for (Map.Entry<String, Float> entry : scores.entrySet()) {
+            heap.offer(entry);
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+
+        List<String> result = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            result.add(heap.poll().getKey());
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    private void ensureBuilt() {
+        if (!built) {
+            build();
+        }
+    }
+
+    /* build y onProductChanged comparten el monitor: un cambio confirmado durante la
+    * construcción se aplica después y no se pierde (las actualizaciones son idempotentes) */
+    private synchronized void build() {
+        if (built) {
+            return;
+        }
+        productCatalogCache.snapshot().products().forEach(this::index);
+        built = true;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onProductChanged(ProductChangedEvent event) {
+        if (!built) {
+            return; // se indexará completo en la primera búsqueda
+        }
+        // Estado ya confirmado, según lo dejó ProductCatalogCache (oyente que corre antes)
+        ProductCatalogCache.Snapshot catalog = productCatalogCache.snapshot();
+        for (String codigo : event.codigos()) {
+            remove(codigo);
+            ProductDTO product = catalog.find(codigo);
+            if (product != null) {
+                index(product);
+            }
+        }
+    }
+
+    private void index(ProductDTO product) {
+        Map<String, Float> weights = new HashMap<>();
+        tokenize(product.getNombre()).forEach(term -> weights.merge(term, NOMBRE_WEIGHT, Float::sum));
+        tokenize(product.getDescripcion()).forEach(term -> weights.merge(term, DESCRIPCION_WEIGHT, Float::sum));
+
+        weights.forEach((term, weight) ->
+                postings.computeIfAbsent(term, key -> new ConcurrentHashMap<>()).put(product.getCodigo(), weight));
+        termsByCodigo.put(product.getCodigo(), Set.copyOf(weights.keySet()));
+    }
+
+    private void remove(String codigo) {
+        Set<String> terms = termsByCodigo.remove(codigo);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            postings.computeIfPresent(term, (key, docs) -> {
+                docs.remove(codigo);
+                return docs.isEmpty() ? null : docs;
+            });
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+                .replaceAll("")
+                .toLowerCase(Locale.ROOT);
+
+        List<String> tokens = new ArrayList<>();
+        for (String word : NON_ALPHANUMERIC.split(normalized)) {
+            if (!word.isEmpty()) {
+                tokens.add(stem(word));
+            }
+        }
+        return tokens;
+    }
+
+    /*
+    * Stemming mínimo para plurales en español, aplicado igual al texto y a la consulta:
+    * tortas -> torta, pasteles -> pastel, azucares -> azucar, postre/postres -> postr.
+    * */
+    static String stem(String word) {
+        String stem = word;
+        if (stem.length() > 3 && stem.endsWith("s")) {
+            stem = stem.substring(0, stem.length() - 1);
+        }
+        if (stem.length() > 4 && stem.endsWith("e") && "lnrdj".indexOf(stem.charAt(stem.length() - 2)) >= 0) {
+            stem = stem.substring(0, stem.length() - 1);
+        }
+        return stem;
+    }
+}
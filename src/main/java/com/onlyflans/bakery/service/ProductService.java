@@ -1,45 +1,151 @@
 package com.onlyflans.bakery.service;
 
+import com.onlyflans.bakery.model.ImageStatus;
 import com.onlyflans.bakery.model.Product;
 import com.onlyflans.bakery.model.dto.request.ProductCreateRequest;
+import com.onlyflans.bakery.model.dto.request.ProductImageConfirmRequest;
+import com.onlyflans.bakery.model.dto.request.ProductImageUploadRequest;
 import com.onlyflans.bakery.model.dto.request.ProductUpdateRequest;
+import com.onlyflans.bakery.model.dto.response.ProductBatchDTO;
 import com.onlyflans.bakery.model.dto.response.ProductDTO;
+import com.onlyflans.bakery.model.dto.response.ProductFacetsDTO;
+import com.onlyflans.bakery.model.dto.response.ProductImageUploadDTO;
+import com.onlyflans.bakery.model.dto.response.ProductPageDTO;
 import com.onlyflans.bakery.model.mapper.ProductMapper;
 import com.onlyflans.bakery.persistence.IProductPersistence;
 import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
 
+@Slf4j
 @Service
 @Transactional
 public class ProductService {
 
+    public static final int MAX_PAGE_SIZE = 100;
+    public static final int MAX_SEARCH_RESULTS = 50;
+    // Bytes que se leen del objeto subido para revisar la firma del formato (WEBP necesita 12)
+    private static final int IMAGE_SIGNATURE_BYTES = 12;
+
     private final IProductPersistence productPersistence;
+    private final ProductImageOutbox productImageOutbox;
+    private final ProductImageSweeper productImageSweeper;
     private final S3Service s3Service;
+    private final TransactionTemplate transactionTemplate;
+    private final ProductCatalogCache productCatalogCache;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductFacets productFacets;
+    private final ProductNotFoundCache productNotFoundCache;
+    private final ApplicationEventPublisher eventPublisher;
+    // Consultas por código en curso, compartidas entre peticiones concurrentes
+    private final SingleFlight<String, Optional<ProductDTO>> productLoads = new SingleFlight<>();
 
-    public ProductService(IProductPersistence productPersistence, S3Service s3Service) {
+    public ProductService(IProductPersistence productPersistence,
+                          ProductImageOutbox productImageOutbox,
+                          ProductImageSweeper productImageSweeper,
+                          S3Service s3Service,
+                          TransactionTemplate transactionTemplate,
+                          ProductCatalogCache productCatalogCache,
+                          ProductSearchIndex productSearchIndex,
+                          ProductFacets productFacets,
+                          ProductNotFoundCache productNotFoundCache,
+                          ApplicationEventPublisher eventPublisher) {
         this.productPersistence = productPersistence;
+        this.productImageOutbox = productImageOutbox;
+        this.productImageSweeper = productImageSweeper;
         this.s3Service = s3Service;
+        this.transactionTemplate = transactionTemplate;
+        this.productCatalogCache = productCatalogCache;
+        this.productSearchIndex = productSearchIndex;
+        this.productFacets = productFacets;
+        this.productNotFoundCache = productNotFoundCache;
+        this.eventPublisher = eventPublisher;
     }
 
     /*
-    * orderPersistence.findAll() devuelve una List<Product> desde la base de datos.
-    * .stream() convierte esa lista en un flujo.
-    * .map(OrderMapper::toDTO) aplica el método OrderMapper.toDTO() a cada elemento (convierte de entidad a DTO).
-    * .toList() recopila el resultado final como una lista de OrderDTO.
+    * El catálogo completo se sirve desde un snapshot en memoria (ProductCatalogCache).
+    * Solo la primera llamada consulta la BD; los cambios se aplican al confirmar cada transacción.
+    * SUPPORTS: no abre transacción (ni toma una conexión del pool) para leer el snapshot.
     * */
+    @Transactional(Transactional.TxType.SUPPORTS)
     public List<ProductDTO> getAllProducts(){
-        return productPersistence.findAll()
+        return productCatalogCache.snapshot().products();
+    }
+
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public ProductCatalogCache.Snapshot getCatalog(){
+        return productCatalogCache.snapshot();
+    }
+
+    /*
+    * Búsqueda por nombre/descripción en el índice invertido en memoria (sin LIKE contra la BD).
+    * Los códigos encontrados se resuelven contra el snapshot del catálogo.
+    * */
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public List<ProductDTO> searchProducts(String query, int limit) {
+        if (limit < 1 || limit > MAX_SEARCH_RESULTS) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "El límite de resultados debe estar entre 1 y " + MAX_SEARCH_RESULTS
+            );
+        }
+
+        ProductCatalogCache.Snapshot catalog = productCatalogCache.snapshot();
+        return productSearchIndex.search(query, limit)
                 .stream()
-                .map(ProductMapper::toDTO)
+                .map(catalog::find)
+                .filter(Objects::nonNull)
                 .toList();
     }
 
+    /*
+    * Consulta de varios productos en una sola petición (p. ej. para valorizar un carrito).
+    * Se resuelve contra el snapshot del catálogo, sin ir a la BD; los códigos repetidos se devuelven una vez.
+    * */
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public ProductBatchDTO getProductsByCodigos(List<String> codigos) {
+        ProductCatalogCache.Snapshot catalog = productCatalogCache.snapshot();
+
+        List<ProductDTO> items = new ArrayList<>(codigos.size());
+        List<String> notFound = new ArrayList<>();
+        for (String codigo : new LinkedHashSet<>(codigos)) {
+            ProductDTO product = codigo == null ? null : catalog.find(codigo);
+            if (product != null) {
+                items.add(product);
+            } else {
+                notFound.add(codigo);
+            }
+        }
+
+        ProductBatchDTO batch = new ProductBatchDTO();
+        batch.setItems(items);
+        batch.setNotFound(notFound);
+        return batch;
+    }
+
+    // Conteos por categoría y rango/histograma de precios, mantenidos en memoria
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public ProductFacetsDTO getFacets() {
+        return productFacets.getFacets();
+    }
+
     public ProductDTO createProduct(ProductCreateRequest newProduct, MultipartFile file) throws IOException {
         // Verificar si ya existe el código 
         if(productPersistence.existsById(newProduct.codigo())){
@@ -48,8 +154,8 @@ public class ProductService {
             );
         }
 
-        // 1. Subir imagen a S3
-        String url = s3Service.uploadFile(file, "products/" + newProduct.codigo());
+        // 1. Validar y dejar la imagen en staging; se sube a S3 después del commit (ProductImageOutbox)
+        ProductImageOutbox.StagedImage image = productImageOutbox.stage(file);
 
         // 2. Crear la entidad producto
         // Mapear DTO a la entidad Product
@@ -61,22 +167,83 @@ public class ProductService {
         product.setNombre(newProduct.nombre());
         product.setDescripcion(newProduct.descripcion());
         product.setPrecio(newProduct.precio());
-        product.setUrl(url); // Usar la URL devuelta por S3
+        product.setImageStatus(ImageStatus.PENDING); // La url se completa cuando termina la subida
 
-        // 3. Guardar la entidad
+        // 3. Guardar la entidad y, en la misma transacción, la tarea de subida
         Product savedEntity = productPersistence.save(product);
+        productImageOutbox.enqueue(savedEntity.getCodigo(), image);
         
-        // 4. Devolver el DTO de respuesta
-        return ProductMapper.toDTO(savedEntity);
+        // 4. Devolver el DTO de respuesta (y avisar al catálogo en memoria tras el commit)
+        ProductDTO saved = ProductMapper.toDTO(savedEntity);
+        eventPublisher.publishEvent(ProductChangedEvent.saved(saved));
+        return saved;
     }
 
+    /*
+    * 1. Si el snapshot del catálogo ya está cargado, es la fuente completa: no se consulta la BD.
+    * 2. Si no, los códigos recién confirmados como inexistentes responden 404 desde el cache negativo.
+    * 3. Las peticiones concurrentes por el mismo código comparten una sola consulta (single-flight).
+    * SUPPORTS: las peticiones que esperan a otra no toman una conexión del pool.
+    * */
+    @Transactional(Transactional.TxType.SUPPORTS)
     public ProductDTO getProductById(String codigo) {
-        Product product = productPersistence.findById(codigo).orElseThrow(() ->
-                new ResponseStatusException(
-                        HttpStatus.NOT_FOUND, "Producto no encontrado"
-                ));
+        ProductCatalogCache.Snapshot catalog = productCatalogCache.loadedSnapshot();
+        if (catalog != null) {
+            ProductDTO product = catalog.find(codigo);
+            if (product == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Producto no encontrado");
+            }
+            return product;
+        }
 
-        return ProductMapper.toDTO(product); // Usar el mapper estático
+        if (productNotFoundCache.isMissing(codigo)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Producto no encontrado");
+        }
+
+        // Proyección directa al DTO, sin cargar la entidad
+        Optional<ProductDTO> product = productLoads.load(codigo, () -> productPersistence.findDTOByCodigo(codigo));
+        if (product.isEmpty()) {
+            productNotFoundCache.markMissing(codigo);
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Producto no encontrado");
+        }
+        return product.get();
+    }
+
+    /*
+    * Página de productos ordenada por código, opcionalmente filtrada por categoría.
+    * Se piden size + 1 filas: si llega la fila extra hay una página siguiente (sin COUNT(*)).
+    * */
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public ProductPageDTO getProductPage(String cursor, int size, String categoria) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "El tamaño de página debe estar entre 1 y " + MAX_PAGE_SIZE
+            );
+        }
+
+        boolean fromStart = cursor == null || cursor.isBlank();
+        boolean byCategoria = categoria != null && !categoria.isBlank();
+        Limit limit = Limit.of(size + 1);
+
+        List<ProductDTO> rows;
+        if (byCategoria) {
+            rows = fromStart
+                    ? productPersistence.findPageByCategoria(categoria, limit)
+                    : productPersistence.findPageByCategoriaAfter(categoria, cursor, limit);
+        } else {
+            rows = fromStart
+                    ? productPersistence.findPage(limit)
+                    : productPersistence.findPageAfter(cursor, limit);
+        }
+
+        boolean hasMore = rows.size() > size;
+        List<ProductDTO> items = hasMore ? rows.subList(0, size) : rows;
+
+        ProductPageDTO page = new ProductPageDTO();
+        page.setItems(items);
+        page.setHasMore(hasMore);
+        page.setNextCursor(hasMore ? items.get(items.size() - 1).getCodigo() : null);
+        return page;
     }
 
     // Actualizar: Recibir Request DTO y Devolver Response DTO
@@ -84,28 +251,164 @@ public class ProductService {
         Product existingProduct = productPersistence.findById(codigo)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Producto no encontrado"));
 
+        // SI hay archivo → se deja en staging y se sube a S3 después del commit
+        ProductImageOutbox.StagedImage image = file != null && !file.isEmpty()
+                ? productImageOutbox.stage(file)
+                : null;
+
         existingProduct.setCategoria(updateProduct.categoria());
         existingProduct.setNombre(updateProduct.nombre());
         existingProduct.setDescripcion(updateProduct.descripcion());
         existingProduct.setPrecio(updateProduct.precio());
-        existingProduct.setUrl(updateProduct.url()); // Usar los getters del Request DTO
 
-        // SI hay archivo → subir a S3
-        if (file != null && !file.isEmpty()) {
-            String url = s3Service.uploadFile(file, "products/" + codigo);
-            existingProduct.setUrl(url);
+        if (image != null) {
+            // Se mantiene la URL actual hasta que la nueva imagen esté en S3
+            existingProduct.setImageStatus(ImageStatus.PENDING);
+            productImageOutbox.enqueue(codigo, image);
+        } else if (updateProduct.url() != null && !updateProduct.url().isBlank()) {
+            /* Sin url (o en blanco) en el request se conserva la imagen actual. Si se reemplaza por otra
+            * (otra key del bucket o una URL externa), la anterior queda para el barrido */
+            String previousKey = s3Service.objectKey(existingProduct.getUrl());
+            if (previousKey != null && !previousKey.equals(s3Service.objectKey(updateProduct.url()))) {
+                productImageSweeper.markOrphan(existingProduct.getUrl());
+            }
+            existingProduct.setUrl(updateProduct.url()); // Usar los getters del Request DTO
         }
-        // SI NO hay archivo → mantener URL original
 
-        return ProductMapper.toDTO(productPersistence.save(existingProduct));
+        ProductDTO updated = ProductMapper.toDTO(productPersistence.save(existingProduct));
+        eventPublisher.publishEvent(ProductChangedEvent.saved(updated));
+        return updated;
     }
 
-    public void deleteProduct(String codigo) {
-        if(!productPersistence.existsById(codigo)){
-            throw new ResponseStatusException(
-                    HttpStatus.NOT_FOUND, "Producto no encontrado"
-            );
+    /*
+    * Subida directa, paso 1: valida el archivo declarado con las mismas reglas que el multipart
+    * y firma un PUT a S3 por unos minutos. La imagen va del cliente a S3 sin pasar por la API.
+    * Cada subida usa una key nueva, así una subida sin confirmar no reemplaza la imagen publicada
+    * (las que nunca se confirman se limpian con una regla de ciclo de vida sobre assets/img/uploads/;
+    * al confirmar, la imagen se publica en assets/img/products/, fuera del alcance de esa regla).
+    * */
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public ProductImageUploadDTO createImageUpload(String codigo, ProductImageUploadRequest request) {
+        if (!productPersistence.existsById(codigo)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Producto no encontrado");
+        }
+
+        String ext = S3Service.extractExtension(request.fileName());
+        S3Service.validateImage(request.contentType(), ext, request.size());
+        if (!S3Service.mimeForExtension(ext).equals(request.contentType())) {
+            throw new IllegalArgumentException("El tipo MIME no corresponde a la extensión");
+        }
+
+        String key = S3Service.directUploadPrefix(codigo) + UUID.randomUUID() + ext;
+        PresignedPutObjectRequest presigned = s3Service.presignImageUpload(
+                key, request.contentType(), request.size(), request.sha256());
+
+        Map<String, String> headers = new LinkedHashMap<>();
+        presigned.signedHeaders().forEach((name, values) -> {
+            if (!"host".equalsIgnoreCase(name)) {
+                headers.put(name, String.join(",", values));
+            }
+        });
+
+        ProductImageUploadDTO upload = new ProductImageUploadDTO();
+        upload.setKey(key);
+        upload.setUploadUrl(presigned.url().toString());
+        upload.setMethod(presigned.httpRequest().method().name());
+        upload.setHeaders(headers);
+        upload.setExpiresAt(presigned.expiration());
+        return upload;
+    }
+
+    /*
+    * Subida directa, paso 2: antes de publicar la imagen se revisa el objeto en S3
+    * (HEAD: tamaño y tipo; GET por rango: firma PNG/JPEG/WEBP). Si no pasa, se borra.
+    * Si pasa, se copia dentro de S3 a su key direccionada por contenido (la misma que usa el outbox),
+    * que es la que se publica, y la subida temporal se borra. El hash es el checksum SHA-256 que S3
+    * verificó al recibir el PUT (firmado en paso 1) y que devuelve el HEAD: la imagen no vuelve a la API.
+    * SUPPORTS: las llamadas a S3 no retienen una conexión; solo la actualización del producto abre transacción.
+    * */
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public ProductDTO confirmImageUpload(String codigo, ProductImageConfirmRequest request) {
+        String key = request.key();
+        if (!key.startsWith(S3Service.directUploadPrefix(codigo)) || key.contains("..")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "La key no corresponde a una subida de este producto");
+        }
+
+        String mime = S3Service.mimeForExtension(S3Service.extractExtension(key));
+        HeadObjectResponse head = s3Service.headObject(key)
+                .orElseThrow(() -> new ResponseStatusException(
+                        HttpStatus.NOT_FOUND, "No se encontró la imagen subida (¿expiró la URL firmada?)"
+                ));
+
+        long size = head.contentLength() == null ? 0 : head.contentLength();
+        if (size < 1 || size > S3Service.MAX_IMAGE_BYTES || !mime.equals(head.contentType())) {
+            rejectUpload(key, "La imagen subida no cumple el tamaño o el tipo permitido");
+        }
+        if (head.checksumSHA256() == null || head.checksumSHA256().contains("-")) {
+            // Sin checksum (o compuesto, de una subida multipart): no se firmó con la URL de upload-url
+            rejectUpload(key, "La imagen subida no tiene el checksum SHA-256 firmado");
+        }
+        if (!S3Service.matchesImageSignature(mime, s3Service.readHead(key, IMAGE_SIGNATURE_BYTES))) {
+            rejectUpload(key, "El contenido subido no es una imagen " + mime);
+        }
+
+        /* La key de destino puede estar registrada como huérfana: se reclama antes de copiar,
+        * así el barrido no la borra entre el HEAD de la copia y la actualización del producto */
+        String contentKey = S3Service.contentImageKey(
+                S3Service.checksumToHex(head.checksumSHA256()), S3Service.extractExtension(key));
+        transactionTemplate.executeWithoutResult(status -> productImageSweeper.reclaim(contentKey));
+        s3Service.copyIfAbsent(key, contentKey, mime);
+
+        String url = s3Service.publicUrl(contentKey);
+        ProductDTO confirmed;
+        try {
+            confirmed = transactionTemplate.execute(status -> {
+                Product product = productPersistence.findById(codigo)
+                        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Producto no encontrado"));
+                if (!url.equals(product.getUrl())) {
+                    productImageSweeper.markOrphan(product.getUrl());
+                }
+                product.setUrl(url);
+                product.setImageStatus(ImageStatus.READY);
+                // Una imagen multipart aún pendiente no debe reemplazar a la recién confirmada
+                productImageOutbox.cancel(codigo);
+
+                ProductDTO updated = ProductMapper.toDTO(product);
+                eventPublisher.publishEvent(ProductChangedEvent.saved(updated));
+                return updated;
+            });
+        } catch (RuntimeException ex) {
+            // Compensación: si nadie usa la copia, el barrido la borrará
+            transactionTemplate.executeWithoutResult(status -> productImageSweeper.markOrphan(url));
+            throw ex;
         }
-        productPersistence.deleteById(codigo);
+
+        deleteUpload(key);
+        return confirmed;
+    }
+
+    // Si el borrado falla, la regla de ciclo de vida de assets/img/uploads/ limpia el objeto
+    private void deleteUpload(String key) {
+        try {
+            s3Service.deleteObject(key);
+        } catch (RuntimeException ex) {
+            log.warn("No se pudo borrar la subida temporal {}", key, ex);
+        }
+    }
+
+    private void rejectUpload(String key, String reason) {
+        s3Service.deleteObject(key);
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, reason);
+    }
+
+    public void deleteProduct(String codigo) {
+        Product product = productPersistence.findById(codigo)
+                .orElseThrow(() -> new ResponseStatusException(
+                        HttpStatus.NOT_FOUND, "Producto no encontrado"
+                ));
+        productPersistence.delete(product);
+        productImageOutbox.cancel(codigo);
+        productImageSweeper.markOrphan(product.getUrl());
+        eventPublisher.publishEvent(ProductChangedEvent.deleted(codigo));
     }
 }
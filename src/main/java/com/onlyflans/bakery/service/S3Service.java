@@ -1,30 +1,67 @@
 package com.onlyflans.bakery.service;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.ChecksumAlgorithm;
+import software.amazon.awssdk.services.s3.model.ChecksumMode;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.MetadataDirective;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
 
-import java.io.IOException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Service
 public class S3Service {
 
     private final String bucketName;
     private final S3Client s3;
+    private final S3AsyncClient s3Async;
+    private final S3Presigner presigner;
+    private final Duration presignTtl;
+    private final String endpoint;
 
+    @Autowired
     public S3Service(
             @Value("${aws.s3.bucket.name}") String bucketName,
-            @Value("${aws.region}") String awsRegion
+            S3Client s3,
+            S3AsyncClient s3Async,
+            S3Presigner presigner,
+            @Value("${aws.s3.presign.ttl-seconds:300}") long presignTtlSeconds,
+            @Value("${aws.s3.endpoint:}") String endpoint
     ) {
         this.bucketName = bucketName;
-        this.s3 = S3Client.builder()
-                .region(Region.of(awsRegion))
-                .build();
+        this.s3 = s3;
+        this.s3Async = s3Async;
+        this.presigner = presigner;
+        this.presignTtl = Duration.ofSeconds(presignTtlSeconds);
+        this.endpoint = endpoint;
+    }
+
+    // Para pruebas con clientes falsos
+    S3Service(String bucketName, S3Client s3, S3AsyncClient s3Async) {
+        this(bucketName, s3, s3Async, null, 300, "");
     }
 
     private static final List<String> ALLOWED_MIME = List.of(
@@ -37,51 +74,238 @@ public class S3Service {
             ".png", ".jpg", ".jpeg", ".webp"
     );
 
-    public String uploadFile(MultipartFile file, String productId) throws IOException {
+    public static final long MAX_IMAGE_BYTES = 5 * 1024 * 1024;
+
+    // Las keys de imágenes nuevas nunca se sobrescriben: CDN y navegadores pueden guardarlas un año
+    public static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    private static final String CONTENT_PREFIX = "assets/img/products/";
+
+    /**
+     * Sube un archivo local a una key direccionada por contenido, sin cargarlo en memoria.
+     * Como la key depende solo de los bytes, si el objeto ya existe (HEAD) no se vuelve a subir.
+     * @return future con true si se hizo el PUT, false si el objeto ya estaba
+     */
+    public CompletableFuture<Boolean> uploadIfAbsentAsync(Path file, String key, String contentType) {
+        return objectExistsAsync(key).thenCompose(exists -> exists
+                ? CompletableFuture.completedFuture(false)
+                : s3Async.putObject(putRequest(key, contentType, IMMUTABLE_CACHE_CONTROL), AsyncRequestBody.fromFile(file))
+                        .thenApply(response -> true));
+    }
+
+    public CompletableFuture<Boolean> objectExistsAsync(String key) {
+        return s3Async.headObject(HeadObjectRequest.builder().bucket(bucketName).key(key).build())
+                .handle((response, ex) -> {
+                    if (ex == null) {
+                        return true;
+                    }
+                    Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+                    if (cause instanceof S3Exception s3Exception && s3Exception.statusCode() == 404) {
+                        return false;
+                    }
+                    throw ex instanceof CompletionException completion ? completion : new CompletionException(ex);
+                });
+    }
 
-        // Validar el archivo, el método arrojará un exception si no es válido
-        validateFile(file);
+    /* Key direccionada por contenido: assets/img/products/{sha256}{ext}.
+    * El mismo archivo siempre cae en la misma key y una key nunca cambia de contenido,
+    * por eso se puede cachear como immutable */
+    public static String contentImageKey(String sha256, String extension) {
+        return CONTENT_PREFIX + sha256 + extension;
+    }
 
-        // Extensión del archivo original
-        String original = file.getOriginalFilename();
-        String ext = original.substring(original.lastIndexOf(".")).toLowerCase();
+    // Key de un objeto de este bucket a partir de su URL pública; null si la URL es externa
+    public String objectKey(String url) {
+        String base = publicUrl("");
+        if (url == null || !url.startsWith(base) || url.length() == base.length()) {
+            return null;
+        }
+        return url.substring(base.length());
+    }
 
-        // Path en S3
-        String key = "assets/img/" + productId + ext;
+    /* Prefijo de las subidas directas del cliente: una key nueva por subida,
+    * así una subida sin confirmar nunca pisa la imagen publicada. Al confirmar, la imagen
+    * se copia a su key direccionada por contenido: aquí solo quedan subidas temporales */
+    public static String directUploadPrefix(String codigo) {
+        return "assets/img/uploads/" + codigo + "/";
+    }
 
+    /**
+     * Firma un PUT directo a S3 válido por aws.s3.presign.ttl-seconds.
+     * Content-Type, Content-Length y el SHA-256 declarado (x-amz-checksum-sha256, en Base64) quedan
+     * dentro de la firma: S3 rechaza el PUT si el cliente envía otro tipo, otro tamaño u otro contenido,
+     * y guarda el checksum con el objeto, así la API obtiene el hash con un HEAD sin descargarlo.
+     */
+    public PresignedPutObjectRequest presignImageUpload(String key, String contentType, long size, String sha256Base64) {
         PutObjectRequest request = PutObjectRequest.builder()
                 .bucket(bucketName)
                 .key(key)
-                //.acl("public-read")
-                .contentType(file.getContentType())
+                .contentType(contentType)
+                .contentLength(size)
+                .checksumAlgorithm(ChecksumAlgorithm.SHA256)
+                .checksumSHA256(sha256Base64)
+                .cacheControl(IMMUTABLE_CACHE_CONTROL) // key única por subida
                 .build();
 
-        s3.putObject(request, RequestBody.fromBytes(file.getBytes()));
+        return presigner.presignPutObject(PutObjectPresignRequest.builder()
+                .signatureDuration(presignTtl)
+                .putObjectRequest(request)
+                .build());
+    }
+
+    // HEAD del objeto (con su checksum, si lo tiene); vacío si no existe
+    public Optional<HeadObjectResponse> headObject(String key) {
+        try {
+            return Optional.of(s3.headObject(HeadObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .checksumMode(ChecksumMode.ENABLED)
+                    .build()));
+        } catch (S3Exception ex) {
+            if (ex.statusCode() == 404) {
+                return Optional.empty();
+            }
+            throw ex;
+        }
+    }
 
-        return "https://" + bucketName + ".s3.amazonaws.com/" + key;
+    // Primeros bytes del objeto con un GET por rango (para revisar la firma del formato)
+    public byte[] readHead(String key, int length) {
+        GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .range("bytes=0-" + (length - 1))
+                .build();
+        return s3.getObjectAsBytes(request).asByteArray();
     }
 
-    private void validateFile(MultipartFile file) {
+    // Checksum SHA-256 de S3 (Base64) en el hex que usan las keys direccionadas por contenido
+    public static String checksumToHex(String sha256Base64) {
+        return HexFormat.of().formatHex(Base64.getDecoder().decode(sha256Base64));
+    }
+
+    /**
+     * Copia un objeto del bucket a una key direccionada por contenido, dentro de S3 (sin pasar por la API),
+     * con el tipo indicado y Cache-Control immutable. Si la key ya existe no se copia.
+     * @return true si se hizo la copia, false si el objeto ya estaba
+     */
+    public boolean copyIfAbsent(String sourceKey, String targetKey, String contentType) {
+        if (headObject(targetKey).isPresent()) {
+            return false;
+        }
+        s3.copyObject(CopyObjectRequest.builder()
+                .sourceBucket(bucketName)
+                .sourceKey(sourceKey)
+                .destinationBucket(bucketName)
+                .destinationKey(targetKey)
+                .metadataDirective(MetadataDirective.REPLACE)
+                .checksumAlgorithm(ChecksumAlgorithm.SHA256)
+                .contentType(contentType)
+                .cacheControl(IMMUTABLE_CACHE_CONTROL)
+                .build());
+        return true;
+    }
+
+    static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 no disponible", ex); // obligatorio en cualquier JRE
+        }
+    }
+
+    public void deleteObject(String key) {
+        s3.deleteObject(DeleteObjectRequest.builder().bucket(bucketName).key(key).build());
+    }
+
+    /* Espera un future de este servicio y relanza la causa original
+    * (el SDK la envuelve en CompletionException) */
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    private PutObjectRequest putRequest(String key, String contentType, String cacheControl) {
+        return PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                //.acl("public-read")
+                .contentType(contentType)
+                .cacheControl(cacheControl)
+                .build();
+    }
+
+    // Con endpoint propio (MinIO/LocalStack) la URL es de estilo path
+    public String publicUrl(String key) {
+        if (endpoint == null || endpoint.isBlank()) {
+            return "https://" + bucketName + ".s3.amazonaws.com/" + key;
+        }
+        return endpoint.replaceAll("/+$", "") + "/" + bucketName + "/" + key;
+    }
+
+    void validateFile(MultipartFile file) {
         if (file.isEmpty()) {
             throw new IllegalArgumentException("El archivo está vacío");
         }
 
-        String mime = file.getContentType();
+        validateImage(file.getContentType(), extractExtension(file.getOriginalFilename()), file.getSize());
+    }
+
+    // Mismas reglas para el multipart y para las subidas directas con URL firmada
+    public static void validateImage(String mime, String ext, long size) {
         if (mime == null || !ALLOWED_MIME.contains(mime)) {
             throw new IllegalArgumentException("Tipo MIME no permitido");
         }
 
-        String ext = extractExtension(file.getOriginalFilename());
         if (!ALLOWED_EXT.contains(ext)) {
             throw new IllegalArgumentException("Extensión no permitida");
         }
 
-        if (file.getSize() > 5 * 1024 * 1024) {
+        if (size > MAX_IMAGE_BYTES) {
             throw new IllegalArgumentException("El archivo es demasiado grande");
         }
     }
 
-    private String extractExtension(String filename) {
+    /* Revisa la firma (magic bytes) del contenido contra el tipo declarado:
+    * PNG 89 50 4E 47 0D 0A 1A 0A, JPEG FF D8 FF, WEBP "RIFF" .... "WEBP" */
+    public static boolean matchesImageSignature(String mime, byte[] head) {
+        return switch (mime) {
+            case "image/png" -> startsWith(head, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A);
+            case "image/jpeg" -> startsWith(head, 0, 0xFF, 0xD8, 0xFF);
+            case "image/webp" -> startsWith(head, 0, 'R', 'I', 'F', 'F') && startsWith(head, 8, 'W', 'E', 'B', 'P');
+            default -> false;
+        };
+    }
+
+    private static boolean startsWith(byte[] data, int offset, int... expected) {
+        if (data.length < offset + expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if ((data[offset + i] & 0xFF) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Tipo MIME que corresponde a una extensión permitida
+    public static String mimeForExtension(String ext) {
+        return switch (ext) {
+            case ".png" -> "image/png";
+            case ".jpg", ".jpeg" -> "image/jpeg";
+            case ".webp" -> "image/webp";
+            default -> throw new IllegalArgumentException("Extensión no permitida");
+        };
+    }
+
+    static String extractExtension(String filename) {
         if (filename == null || !filename.contains(".")) {
             throw new IllegalArgumentException("Archivo sin extensión");
         }
@@ -0,0 +1,149 @@
+package com.onlyflans.bakery.service;
+
+import com.onlyflans.bakery.model.Token;
+import com.onlyflans.bakery.persistence.token.TokenRepository;
+import com.onlyflans.bakery.security.TokenDigest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Migra las filas antiguas de la tabla tokens, que guardaban el JWT completo,
+ * al nuevo esquema indexado por token_hash (SHA-256 de 32 bytes).
+ * Se ejecuta una vez al iniciar la aplicación, por lotes y cada lote en su propia transacción.
+ * Mientras no termine, TokenService también busca por el JWT completo.
+ * Antes elimina el índice único heredado sobre la columna token (ddl-auto=update no quita índices)
+ * y completa expiresAt en las filas antiguas que no lo tienen, para que TokenPurgeJob las elimine.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TokenHashMigration {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final TokenRepository tokenRepository;
+    private final JwtService jwtService;
+    private final TransactionTemplate transactionTemplate;
+    private final DataSource dataSource;
+
+    private volatile boolean pending = true;
+
+    public boolean isPending() {
+        return pending;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateLegacyTokens() {
+        dropLegacyTokenIndex();
+
+        int migrated = 0;
+        try {
+            int batch;
+            do {
+                batch = transactionTemplate.execute(status -> {
+                    List<Token> legacyTokens = tokenRepository
+                            .findByTokenHashIsNullAndTokenIsNotNull(PageRequest.of(0, BATCH_SIZE));
+                    for (Token token : legacyTokens) {
+                        if (token.getExpiresAt() == null) {
+                            // Se toma del claim exp para que la purga pueda eliminarla; si no se puede leer, el token no sirve
+                            jwtService.readExpiration(token.getToken()).ifPresentOrElse(
+                                    token::setExpiresAt,
+                                    () -> { token.setExpired(true); token.setRevoked(true); }
+                            );
+                        }
+                        token.setTokenHash(TokenDigest.sha256(token.getToken()));
+                        token.setToken(null); // ya no se guarda el JWT completo
+                    }
+                    return legacyTokens.size();
+                });
+                migrated += batch;
+            } while (batch == BATCH_SIZE);
+
+            pending = false;
+
+            // Filas migradas en versiones anteriores, sin expiresAt ni JWT del que leerlo
+            tokenRepository.boundMissingExpiration(Instant.now().plusMillis(jwtService.getRefreshExpiration()));
+            tokenRepository.revokeExpiredLegacyTokens();
+        } catch (RuntimeException ex) {
+            // Se sigue buscando también por el JWT completo; se reintenta en el próximo inicio
+            log.error("No se pudo completar la migración de tokens a token_hash", ex);
+        }
+
+        if (migrated > 0) {
+            log.info("Migración de tokens: {} registros migrados a token_hash", migrated);
+        }
+    }
+
+    /*
+    * El esquema original tenía token VARCHAR(1024) UNIQUE. Con ddl-auto=update quitar unique de la
+    * entidad no borra ese índice, que seguiría creciendo con cada token. Se busca en los metadatos
+    * JDBC el índice único cuya única columna es token y se elimina; si ya no existe no se hace nada.
+    * La sentencia depende del motor: DROP CONSTRAINT (Oracle, H2) o DROP INDEX (MySQL).
+    * */
+    private void dropLegacyTokenIndex() {
+        try (Connection connection = dataSource.getConnection()) {
+            for (String index : findLegacyTokenIndexes(connection)) {
+                if (tryExecute(connection, "alter table tokens drop constraint " + index)
+                        || tryExecute(connection, "alter table tokens drop index " + index)
+                        || tryExecute(connection, "drop index " + index)) {
+                    log.info("Migración de tokens: eliminado el índice único heredado {} sobre tokens.token", index);
+                } else {
+                    log.warn("No se pudo eliminar el índice único heredado {} sobre tokens.token; eliminarlo a mano", index);
+                }
+            }
+        } catch (SQLException ex) {
+            log.warn("No se pudo revisar los índices de la tabla tokens", ex);
+        }
+    }
+
+    private static List<String> findLegacyTokenIndexes(Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        // Columnas de cada índice único; el nombre de la tabla puede estar en mayúsculas según el motor
+        Map<String, List<String>> columnsByIndex = new LinkedHashMap<>();
+        for (String table : List.of("tokens", "TOKENS")) {
+            try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), connection.getSchema(), table, true, false)) {
+                while (rs.next()) {
+                    String index = rs.getString("INDEX_NAME");
+                    String column = rs.getString("COLUMN_NAME");
+                    if (index != null && column != null) {
+                        columnsByIndex.computeIfAbsent(index, key -> new ArrayList<>()).add(column);
+                    }
+                }
+            }
+        }
+
+        List<String> legacy = new ArrayList<>();
+        columnsByIndex.forEach((index, columns) -> {
+            if (columns.size() == 1 && columns.get(0).equalsIgnoreCase("token")) {
+                legacy.add(index);
+            }
+        });
+        return legacy;
+    }
+
+    private static boolean tryExecute(Connection connection, String sql) {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+            return true;
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.onlyflans.bakery.service;
+
+import com.onlyflans.bakery.persistence.token.TokenRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Tarea programada que elimina de la tabla tokens los registros revocados o vencidos.
+ * Borra por lotes (cada lote es un DELETE ... WHERE id IN (...) en su propia transacción)
+ * y se detiene al alcanzar el tiempo máximo, para no competir con el tráfico normal.
+ */
+@Slf4j
+@Component
+public class TokenPurgeJob {
+
+    private final TokenRepository tokenRepository;
+    private final int batchSize;
+    private final long maxRuntimeMs;
+
+    public TokenPurgeJob(
+            TokenRepository tokenRepository,
+            @Value("${application.security.token-purge.batch-size:500}") int batchSize,
+            @Value("${application.security.token-purge.max-runtime-ms:5000}") long maxRuntimeMs
+    ) {
+        this.tokenRepository = tokenRepository;
+        // Oracle no admite más de 1000 elementos en una lista IN
+        this.batchSize = Math.max(1, Math.min(batchSize, 1000));
+        this.maxRuntimeMs = maxRuntimeMs;
+    }
+
+    @Scheduled(
+            initialDelayString = "${application.security.token-purge.initial-delay-ms:60000}",
+            fixedDelayString = "${application.security.token-purge.interval-ms:3600000}"
+    )
+    public void purgeDeadTokens() {
+        final long deadline = System.currentTimeMillis() + maxRuntimeMs;
+        final Instant now = Instant.now();
+
+        int purged = purge(deadline, page -> tokenRepository.findRevokedIds(page));
+        purged += purge(deadline, page -> tokenRepository.findExpiredIds(now, page));
+
+        if (purged > 0) {
+            log.info("Purga de tokens: {} registros eliminados", purged);
+        }
+    }
+
+    private int purge(long deadline, Function<Pageable, List<Long>> findIds) {
+        int purged = 0;
+        while (System.currentTimeMillis() < deadline) {
+            List<Long> ids = findIds.apply(PageRequest.of(0, batchSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+
+            tokenRepository.deleteAllByIdInBatch(ids);
+            purged += ids.size();
+
+            if (ids.size() < batchSize) {
+                break;
+            }
+        }
+        return purged;
+    }
+}
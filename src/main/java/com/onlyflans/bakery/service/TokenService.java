@@ -0,0 +1,182 @@
+package com.onlyflans.bakery.service;
+
+import com.onlyflans.bakery.exception.InvalidTokenException;
+import com.onlyflans.bakery.model.Token;
+import com.onlyflans.bakery.model.User;
+import com.onlyflans.bakery.persistence.token.TokenRepository;
+import com.onlyflans.bakery.security.TokenDigest;
+import com.onlyflans.bakery.security.TokenValidityCache;
+import com.onlyflans.bakery.security.VerifiedToken;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Centraliza el estado de los tokens emitidos (tabla tokens + cache en memoria).
+ * Toda revocación pasa por aquí para que el cache se actualice en forma síncrona.
+ */
+@Service
+@RequiredArgsConstructor
+public class TokenService {
+
+    private final TokenRepository tokenRepository;
+    private final TokenValidityCache tokenValidityCache;
+    private final JwtService jwtService;
+    private final TokenHashMigration tokenHashMigration;
+    private final TokenWriteBuffer tokenWriteBuffer;
+
+    // Clave del recurso de transacción con los digests emitidos en ella, por rut
+    private static final Object ISSUED_IN_TRANSACTION = new Object();
+
+    // true si el token existe y no ha sido expirado ni revocado
+    public boolean isTokenActive(final VerifiedToken verifiedToken){
+        final byte[] hash = TokenDigest.sha256(verifiedToken.token());
+        final String digest = TokenDigest.hex(hash);
+
+        final Boolean cached = tokenValidityCache.get(digest);
+        if(cached != null){
+            return cached;
+        }
+
+        // Token emitido que aún espera en el buffer de escritura diferida
+        if(tokenWriteBuffer.contains(digest)){
+            return true;
+        }
+
+        final long stamp = tokenValidityCache.stamp();
+        final Optional<Token> token = findStoredToken(verifiedToken.token(), hash);
+        if(token.isEmpty()){
+            return false;
+        }
+
+        final boolean active = !token.get().isExpired() && !token.get().isRevoked();
+        tokenValidityCache.put(stamp, digest, verifiedToken.rut(), active, verifiedToken.expiration().getTime());
+        return active;
+    }
+
+    public void saveUserToken(User user, String jwtToken){
+        final Date expiration = jwtService.verify(jwtToken).expiration();
+        final byte[] hash = TokenDigest.sha256(jwtToken);
+        var token = Token.builder()
+                .user(user)
+                .tokenHash(hash)
+                .tokenType(Token.TokenType.BEARER)
+                .expired(false)
+                .revoked(false)
+                .expiresAt(expiration.toInstant())
+                .build();
+
+        final String digest = TokenDigest.hex(hash);
+        issuedInTransaction(user.getRut()).add(digest);
+
+        final long stamp = tokenValidityCache.stamp();
+        if(tokenWriteBuffer.isEnabled()){
+            tokenWriteBuffer.add(token);
+        } else {
+            tokenRepository.save(token);
+        }
+        // El token recién emitido queda en cache: su primer uso no consulta la BD
+        tokenValidityCache.put(stamp, digest, user.getRut(), true, expiration.getTime());
+    }
+
+    // Login y refresh: revoca los tokens del usuario y registra el nuevo en una transacción corta (UPDATE + INSERT)
+    @Transactional
+    public void replaceUserTokens(User user, String jwtToken){
+        revokeAllUserTokens(user);
+        saveUserToken(user, jwtToken);
+    }
+
+    /*
+    * Se marca en el cache antes del UPDATE y otra vez tras el commit: mientras la transacción
+    * no se confirma, otra petición puede leer la fila aún vigente y volver a cachearla como activa
+    * (con el stamp ya incrementado); la segunda marca la corrige.
+    * La segunda marca no toca los tokens emitidos después en la misma transacción (login y refresh
+    * revocan y emiten juntos): esos ya están cacheados como vigentes y deben seguir así.
+    * */
+    public void revokeAllUserTokens(final User user){
+        final String rut = user.getRut();
+        tokenWriteBuffer.discardUserTokens(rut);
+        tokenValidityCache.markAllRevoked(rut);
+        tokenRepository.revokeAllByUserRut(rut);
+        final Set<String> issuedAfter = issuedInTransaction(rut);
+        issuedAfter.clear();
+        afterCommit(() -> tokenValidityCache.markAllRevoked(rut, issuedAfter));
+    }
+
+    public void revokeToken(final String jwtToken){
+        final byte[] hash = TokenDigest.sha256(jwtToken);
+
+        // Si aún no llegaba a la BD basta con descartarlo del buffer
+        if(tokenWriteBuffer.discard(TokenDigest.hex(hash))){
+            tokenValidityCache.markRevoked(TokenDigest.hex(hash));
+            return;
+        }
+
+        Token storedToken = findStoredToken(jwtToken, hash)
+                .orElseThrow(() -> new InvalidTokenException("Token no válido"));
+
+        if (storedToken.isExpired() || storedToken.isRevoked()) {
+            throw new InvalidTokenException("Token ya se encuentra expirado o revocado");
+        }
+
+        final String digest = TokenDigest.hex(hash);
+        tokenValidityCache.markRevoked(digest);
+        storedToken.setExpired(true);
+        storedToken.setRevoked(true);
+        tokenRepository.save(storedToken);
+        afterCommit(() -> tokenValidityCache.markRevoked(digest));
+    }
+
+    // Ejecuta la acción al confirmar la transacción en curso, o de inmediato si no hay una
+    private static void afterCommit(final Runnable action){
+        if(!TransactionSynchronizationManager.isSynchronizationActive()){
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /* Digests que la transacción en curso emitió para el usuario. Sin transacción devuelve un
+    * conjunto nuevo: la revocación ya se aplicó y no hay una segunda marca que filtrar */
+    @SuppressWarnings("unchecked")
+    private static Set<String> issuedInTransaction(final String rut){
+        if(!TransactionSynchronizationManager.isSynchronizationActive()){
+            return new HashSet<>();
+        }
+        Map<String, Set<String>> issued = (Map<String, Set<String>>) TransactionSynchronizationManager.getResource(ISSUED_IN_TRANSACTION);
+        if(issued == null){
+            issued = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(ISSUED_IN_TRANSACTION, issued);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ISSUED_IN_TRANSACTION);
+                }
+            });
+        }
+        return issued.computeIfAbsent(rut, key -> new HashSet<>());
+    }
+
+    // Busca por el digest; mientras queden filas sin migrar, también por el JWT completo
+    private Optional<Token> findStoredToken(final String jwtToken, final byte[] hash){
+        final Optional<Token> token = tokenRepository.findByTokenHash(hash);
+        if(token.isPresent() || !tokenHashMigration.isPending()){
+            return token;
+        }
+        return tokenRepository.findByToken(jwtToken);
+    }
+}
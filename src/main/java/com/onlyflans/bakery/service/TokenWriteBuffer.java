@@ -0,0 +1,221 @@
+package com.onlyflans.bakery.service;
+
+import com.onlyflans.bakery.model.Token;
+import com.onlyflans.bakery.persistence.token.TokenRepository;
+import com.onlyflans.bakery.security.TokenDigest;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Modo opcional de escritura diferida (write-behind) para los tokens emitidos.
+ * Los tokens nuevos quedan en memoria y se insertan en lotes JDBC cada flush-interval-ms
+ * o al juntar batch-size tokens. Un token permanece en el buffer hasta que su lote
+ * se confirma en la BD, así TokenService siempre lo encuentra (lectura de las propias escrituras).
+ * Si la JVM se cae, los tokens aún no escritos se pierden y esos usuarios deben volver a iniciar sesión.
+ * Un token entra al buffer solo cuando se confirma la transacción que lo emitió. Si un lote falla
+ * se reintenta fila a fila y la fila que falla max-row-attempts veces se descarta (p. ej. su usuario
+ * fue eliminado). Con el buffer lleno (max-pending) el token se escribe en forma síncrona.
+ */
+@Slf4j
+@Component
+public class TokenWriteBuffer {
+
+    private final TokenRepository tokenRepository;
+    private final TransactionTemplate transactionTemplate;
+    // Las escrituras desde afterCommit necesitan su propia transacción
+    private final TransactionTemplate requiresNew;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxPending;
+    private final int maxRowAttempts;
+
+    // Tokens pendientes indexados por el digest hexadecimal
+    private final Map<String, Token> pending = new ConcurrentHashMap<>();
+    // Intentos fallidos por fila (solo se usa bajo flushLock)
+    private final Map<String, Integer> failures = new HashMap<>();
+    private final Object flushLock = new Object();
+    private final ScheduledExecutorService scheduler;
+
+    public TokenWriteBuffer(
+            TokenRepository tokenRepository,
+            TransactionTemplate transactionTemplate,
+            @Value("${application.security.token-write-behind.enabled:false}") boolean enabled,
+            @Value("${application.security.token-write-behind.flush-interval-ms:50}") long flushIntervalMs,
+            @Value("${application.security.token-write-behind.batch-size:100}") int batchSize,
+            @Value("${application.security.token-write-behind.max-pending:10000}") int maxPending,
+            @Value("${application.security.token-write-behind.max-row-attempts:3}") int maxRowAttempts
+    ) {
+        this.tokenRepository = tokenRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.requiresNew = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxPending = Math.max(this.batchSize, maxPending);
+        this.maxRowAttempts = Math.max(1, maxRowAttempts);
+
+        if (enabled) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "token-write-behind");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.scheduler.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /* Si hay una transacción en curso (login), el token se agrega recién al confirmarse:
+    * un login revertido no deja un token que luego se persista */
+    public void add(Token token) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(token);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                enqueue(token);
+            }
+        });
+    }
+
+    private void enqueue(Token token) {
+        // Buffer lleno (la BD no da abasto o está caída): escritura síncrona en vez de crecer sin límite
+        if (pending.size() >= maxPending) {
+            requiresNew.executeWithoutResult(status -> tokenRepository.save(token));
+            return;
+        }
+        pending.put(TokenDigest.hex(token.getTokenHash()), token);
+        if (pending.size() >= batchSize && !scheduler.isShutdown()) {
+            scheduler.execute(this::flushSafely);
+        }
+    }
+
+    public boolean contains(String digest) {
+        return pending.containsKey(digest);
+    }
+
+    /**
+     * Descarta un token pendiente (logout antes de que llegara a la BD).
+     * Espera a que termine el lote en curso, para que el llamador pueda consultar la BD después.
+     * @return true si el token estaba pendiente
+     */
+    public boolean discard(String digest) {
+        synchronized (flushLock) {
+            return pending.remove(digest) != null;
+        }
+    }
+
+    /* Descarta los tokens pendientes del usuario. Al igual que discard espera el lote en curso,
+    * así el UPDATE masivo que viene después también alcanza a los tokens recién insertados */
+    public void discardUserTokens(String rut) {
+        synchronized (flushLock) {
+            pending.values().removeIf(token -> token.getUser() != null && rut.equals(token.getUser().getRut()));
+        }
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException ex) {
+            // Los tokens siguen en el buffer y se reintentan en el próximo ciclo
+            log.error("No se pudo escribir el lote de tokens", ex);
+        }
+    }
+
+    /* Cada ciclo escribe lo que había pendiente al empezar; lo que llega mientras tanto
+    * o las filas que fallaron quedan para el ciclo siguiente. Package-private para las pruebas */
+    void flush() {
+        synchronized (flushLock) {
+            List<Map.Entry<String, Token>> snapshot = new ArrayList<>(pending.size());
+            pending.forEach((digest, token) -> snapshot.add(Map.entry(digest, token)));
+
+            for (int from = 0; from < snapshot.size(); from += batchSize) {
+                writeBatch(snapshot.subList(from, Math.min(from + batchSize, snapshot.size())));
+            }
+        }
+    }
+
+    private void writeBatch(List<Map.Entry<String, Token>> batch) {
+        try {
+            // Con hibernate.jdbc.batch_size los INSERT se envían como un lote JDBC
+            transactionTemplate.executeWithoutResult(status ->
+                    tokenRepository.saveAll(batch.stream().map(entry -> forInsert(entry.getValue())).toList()));
+        } catch (RuntimeException ex) {
+            // Una sola fila inválida no debe bloquear al resto: se reintenta fila a fila
+            log.warn("Lote de {} tokens rechazado, se reintenta fila a fila", batch.size(), ex);
+            batch.forEach(this::writeOne);
+            return;
+        }
+        // Recién confirmados en la BD se quitan del buffer
+        batch.forEach(this::written);
+    }
+
+    private void writeOne(Map.Entry<String, Token> entry) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> tokenRepository.save(forInsert(entry.getValue())));
+            written(entry);
+        } catch (RuntimeException ex) {
+            int attempts = failures.merge(entry.getKey(), 1, Integer::sum);
+            if (attempts >= maxRowAttempts) {
+                pending.remove(entry.getKey(), entry.getValue());
+                failures.remove(entry.getKey());
+                log.error("Token descartado del buffer tras {} intentos fallidos", attempts, ex);
+            }
+        }
+    }
+
+    /* Cada intento persiste una copia sin id: el persist de un lote revertido ya asignó ids a sus
+    * entidades, y save() con id haría merge de una fila inexistente en vez de un INSERT.
+    * Los tokens del buffer nunca cambian, así un reintento parte siempre de una entidad nueva */
+    private static Token forInsert(Token token) {
+        return Token.builder()
+                .tokenHash(token.getTokenHash())
+                .token(token.getToken())
+                .tokenType(token.getTokenType())
+                .revoked(token.isRevoked())
+                .expired(token.isExpired())
+                .expiresAt(token.getExpiresAt())
+                .user(token.getUser())
+                .build();
+    }
+
+    private void written(Map.Entry<String, Token> entry) {
+        pending.remove(entry.getKey(), entry.getValue());
+        failures.remove(entry.getKey());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        flushSafely();
+    }
+}
@@ -4,9 +4,12 @@ import com.onlyflans.bakery.model.UserRole;
 import com.onlyflans.bakery.model.dto.request.UserCreateRequest;
 import com.onlyflans.bakery.model.dto.request.UserUpdateRequest;
 import com.onlyflans.bakery.model.User;
+import com.onlyflans.bakery.model.dto.response.OrderSummaryDTO;
 import com.onlyflans.bakery.model.dto.response.UserDTO;
 import com.onlyflans.bakery.model.mapper.UserMapper;
+import com.onlyflans.bakery.persistence.IOrderPersistence;
 import com.onlyflans.bakery.persistence.IUserPersistence;
+import com.onlyflans.bakery.persistence.OrderSummaryView;
 import com.onlyflans.bakery.security.SecurityUser;
 import jakarta.transaction.Transactional;
 import org.springframework.http.HttpStatus;
@@ -17,6 +20,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -25,28 +30,42 @@ public class UserService {
     /* Es mejor usar final que la anotacion Autowired, debido a su inmutabilidad
     * y a la facilidad de los tests */
     private final IUserPersistence userPersistence;
+    private final IOrderPersistence orderPersistence;
     private final PasswordEncoder passwordEncoder;
+    private final TokenService tokenService;
 
-    public UserService(IUserPersistence userPersistence, PasswordEncoder passwordEncoder){
+    public UserService(IUserPersistence userPersistence, IOrderPersistence orderPersistence,
+                       PasswordEncoder passwordEncoder, TokenService tokenService){
         this.passwordEncoder = passwordEncoder;
         this.userPersistence = userPersistence;
+        this.orderPersistence = orderPersistence;
+        this.tokenService = tokenService;
     }
 
+    /* Lectura con proyecciones: usuarios y resúmenes de órdenes directo a DTO,
+    * en dos consultas, en vez de cargar cada User con su colección de órdenes */
+    @Transactional(Transactional.TxType.SUPPORTS)
     public List<UserDTO> getAllUsers(){
-        return userPersistence.findAll()
+        Map<String, List<OrderSummaryDTO>> ordersByRut = orderPersistence.findAllSummaries()
                 .stream()
-                .map(UserMapper::toDTO)
-                .toList();
+                .collect(Collectors.groupingBy(OrderSummaryView::getRutUsuario,
+                        Collectors.mapping(UserService::toSummary, Collectors.toList())));
+
+        List<UserDTO> users = userPersistence.findAllAsDTO();
+        users.forEach(user -> user.setOrders(ordersByRut.getOrDefault(user.getRut(), List.of())));
+        return users;
     }
 
+    @Transactional(Transactional.TxType.SUPPORTS)
     public UserDTO getUser(String rut) {
-        User user = userPersistence.findById(rut)
+        UserDTO user = userPersistence.findDTOByRut(rut)
                 .orElseThrow(() -> new ResponseStatusException(
                         HttpStatus.NOT_FOUND,
                         "Usuario con RUT '" + rut + "' no encontrado"
                 ));
 
-        return UserMapper.toDTO(user);
+        user.setOrders(orderPersistence.findSummariesByRut(rut).stream().map(UserService::toSummary).toList());
+        return user;
 
         /* Evitar el uso de .get() por verificacion redundante y posibles inconsistencias con la basde de datos */
     }
@@ -97,8 +116,10 @@ public class UserService {
         if (updateRequest.fechaNacimiento() != null) {
             user.setFechaNacimiento(updateRequest.fechaNacimiento());
         }
-        if (updateRequest.email() != null) {
+        if (updateRequest.email() != null && !updateRequest.email().equals(user.getEmail())) {
             user.setEmail(updateRequest.email());
+            // El email es el subject del JWT: los tokens emitidos con el email anterior dejan de ser válidos
+            tokenService.revokeAllUserTokens(user);
         }
 
         // Encriptar la nueva contraseña
@@ -150,6 +171,9 @@ public class UserService {
         //GUARDAR
         userPersistence.save(user);
 
+        // El rol viaja en el JWT: se revocan los tokens para que el usuario vuelva a autenticarse con el nuevo rol
+        tokenService.revokeAllUserTokens(user);
+
         return UserMapper.toDTO(user);
     }
 
@@ -167,5 +191,11 @@ public class UserService {
         return UserMapper.toDTO(user);
     }
 
-
+    private static OrderSummaryDTO toSummary(OrderSummaryView view) {
+        OrderSummaryDTO summary = new OrderSummaryDTO();
+        summary.setId(view.getId());
+        summary.setEstado(view.getEstado());
+        summary.setTotal(view.getTotal());
+        return summary;
+    }
 }
@@ -0,0 +1,84 @@
+package com.onlyflans.bakery.controller;
+
+import com.onlyflans.bakery.model.UserRole;
+import com.onlyflans.bakery.model.dto.request.LoginRequest;
+import com.onlyflans.bakery.model.dto.request.UserCreateRequest;
+import com.onlyflans.bakery.persistence.IProductPersistence;
+import com.onlyflans.bakery.service.AuthService;
+import com.onlyflans.bakery.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+		// BD propia: data.sql carga TC001 y esta prueba lo modifica
+		"spring.datasource.url=jdbc:h2:mem:product-controller",
+		"application.security.jwt.secret-key=b25seWZsYW5zLXRlc3Qtc2VjcmV0LWtleS1mb3ItaHMzODQtc2lnbmluZyEhISEh",
+		"application.security.jwt.expiration=900000",
+		"application.security.jwt.refresh-token.expiration=86400000",
+		"application.security.password.min-cost=4",
+		"application.security.password.max-cost=4",
+		"aws.s3.bucket.name=onlyflans-test",
+		"aws.region=us-east-1"
+})
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+class ProductControllerTests {
+
+	private static final String TC001_URL = "https://brigams.pe/wp-content/uploads/chocolate-2.jpg";
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private AuthService authService;
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private IProductPersistence productPersistence;
+
+	private String adminToken() {
+		authService.register(new UserCreateRequest(
+				"44.444.444-4", "Admin", "De Prueba", LocalDate.of(1990, 1, 1),
+				"admin@onlyflans.cl", "secreto123"
+		));
+		userService.updateRole("44.444.444-4", UserRole.ADMIN);
+		return authService.login(new LoginRequest("admin@onlyflans.cl", "secreto123")).accessToken();
+	}
+
+	@Test
+	void updateWithoutUrlKeepsTheCurrentImage() throws Exception {
+		String token = adminToken();
+		MockMultipartFile product = new MockMultipartFile(
+				"product", "", MediaType.APPLICATION_JSON_VALUE,
+				"{\"categoria\": \"Tortas Cuadradas\", \"nombre\": \"Torta Cuadrada de Chocolate\", \"precio\": 46000}"
+						.getBytes(StandardCharsets.UTF_8)
+		);
+
+		mockMvc.perform(multipart(HttpMethod.PUT, "/api/v1/products/TC001")
+						.file(product)
+						.header("Authorization", "Bearer " + token))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.precio").value(46000))
+				.andExpect(jsonPath("$.url").value(TC001_URL));
+
+		assertThat(productPersistence.findById("TC001")).get()
+				.satisfies(saved -> assertThat(saved.getUrl()).isEqualTo(TC001_URL));
+	}
+}
@@ -0,0 +1,78 @@
+package com.onlyflans.bakery.service;
+
+import com.onlyflans.bakery.model.dto.TokenDTOResponse;
+import com.onlyflans.bakery.model.dto.request.LoginRequest;
+import com.onlyflans.bakery.model.dto.request.UserCreateRequest;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+		"spring.jpa.properties.hibernate.generate_statistics=true",
+		"application.security.jwt.secret-key=b25seWZsYW5zLXRlc3Qtc2VjcmV0LWtleS1mb3ItaHMzODQtc2lnbmluZyEhISEh",
+		"application.security.jwt.expiration=900000",
+		"application.security.jwt.refresh-token.expiration=86400000",
+		"application.security.password.min-cost=4",
+		"application.security.password.max-cost=4",
+		"aws.s3.bucket.name=onlyflans-test",
+		"aws.region=us-east-1"
+})
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+class AuthServiceTests {
+
+	@Autowired
+	private AuthService authService;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Test
+	void loginRunsOneSelectOneUpdateAndOneInsert() {
+		authService.register(new UserCreateRequest(
+				"11.111.111-1", "Usuario", "De Prueba", LocalDate.of(1990, 1, 1),
+				"login@onlyflans.cl", "secreto123"
+		));
+
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+
+		authService.login(new LoginRequest("login@onlyflans.cl", "secreto123"));
+
+		// SELECT del usuario + UPDATE masivo de tokens + INSERT del nuevo token
+		// (el id sale del bloque de la secuencia que ya reservó el registro)
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+	}
+
+	@Test
+	void tokenReturnedByLoginIsAcceptedOnProtectedEndpoints() throws Exception {
+		TokenDTOResponse registered = authService.register(new UserCreateRequest(
+				"22.222.222-2", "Usuario", "Con Sesion", LocalDate.of(1990, 1, 1),
+				"sesion@onlyflans.cl", "secreto123"
+		));
+
+		TokenDTOResponse login = authService.login(new LoginRequest("sesion@onlyflans.cl", "secreto123"));
+
+		// La revocación que se repite tras el commit no debe alcanzar al token recién emitido
+		mockMvc.perform(get("/api/v1/orders").header("Authorization", "Bearer " + login.accessToken()))
+				.andExpect(status().is2xxSuccessful());
+		// El token anterior sí quedó revocado
+		mockMvc.perform(get("/api/v1/orders").header("Authorization", "Bearer " + registered.accessToken()))
+				.andExpect(status().isUnauthorized());
+	}
+}
@@ -0,0 +1,125 @@
+package com.onlyflans.bakery.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.CopyObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class S3ServiceTests {
+
+	// Cliente asíncrono falso: guarda en memoria los objetos subidos y responde HEAD con 404 si no existen
+	private static class InMemoryS3AsyncClient implements S3AsyncClient {
+
+		private final Map<String, Long> objects = new HashMap<>();
+		private final List<PutObjectRequest> puts = new ArrayList<>();
+
+		@Override
+		public CompletableFuture<HeadObjectResponse> headObject(HeadObjectRequest request) {
+			Long size = objects.get(request.key());
+			if (size == null) {
+				return CompletableFuture.failedFuture(NoSuchKeyException.builder().statusCode(404).build());
+			}
+			return CompletableFuture.completedFuture(HeadObjectResponse.builder().contentLength(size).build());
+		}
+
+		@Override
+		public CompletableFuture<PutObjectResponse> putObject(PutObjectRequest request, AsyncRequestBody body) {
+			puts.add(request);
+			objects.put(request.key(), body.contentLength().orElse(-1L));
+			return CompletableFuture.completedFuture(PutObjectResponse.builder().build());
+		}
+
+		@Override
+		public String serviceName() {
+			return SERVICE_NAME;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	// Cliente falso para copias dentro del bucket: HEAD responde según las keys ya copiadas
+	private static class CopyingS3Client implements S3Client {
+
+		private final List<CopyObjectRequest> copies = new ArrayList<>();
+
+		@Override
+		public HeadObjectResponse headObject(HeadObjectRequest request) {
+			if (copies.stream().noneMatch(copy -> copy.destinationKey().equals(request.key()))) {
+				throw NoSuchKeyException.builder().statusCode(404).build();
+			}
+			return HeadObjectResponse.builder().build();
+		}
+
+		@Override
+		public CopyObjectResponse copyObject(CopyObjectRequest request) {
+			copies.add(request);
+			return CopyObjectResponse.builder().build();
+		}
+
+		@Override
+		public String serviceName() {
+			return SERVICE_NAME;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	@Test
+	void confirmedUploadsAreCopiedOnceToTheContentKey() {
+		CopyingS3Client client = new CopyingS3Client();
+		S3Service s3Service = new S3Service("onlyflans-test", client, null);
+		String source = S3Service.directUploadPrefix("TC001") + "subida.png";
+		String target = S3Service.contentImageKey("ab12", ".png");
+
+		assertThat(s3Service.copyIfAbsent(source, target, "image/png")).isTrue();
+		assertThat(s3Service.copyIfAbsent(source, target, "image/png")).isFalse();
+
+		assertThat(client.copies).hasSize(1);
+		CopyObjectRequest copy = client.copies.get(0);
+		assertThat(copy.sourceKey()).isEqualTo("assets/img/uploads/TC001/subida.png");
+		assertThat(copy.destinationKey()).isEqualTo("assets/img/products/ab12.png");
+		assertThat(copy.contentType()).isEqualTo("image/png");
+		assertThat(copy.cacheControl()).isEqualTo(S3Service.IMMUTABLE_CACHE_CONTROL);
+	}
+
+	@Test
+	void uploadIfAbsentSkipsThePutWhenTheContentKeyAlreadyExists(@TempDir Path dir) throws IOException {
+		InMemoryS3AsyncClient client = new InMemoryS3AsyncClient();
+		S3Service s3Service = new S3Service("onlyflans-test", null, client);
+		Path image = Files.write(dir.resolve("torta.png"), new byte[] { (byte) 0x89, 'P', 'N', 'G' });
+		String key = S3Service.contentImageKey("ab12", ".png");
+
+		assertThat(S3Service.await(s3Service.uploadIfAbsentAsync(image, key, "image/png"))).isTrue();
+		assertThat(S3Service.await(s3Service.uploadIfAbsentAsync(image, key, "image/png"))).isFalse();
+
+		assertThat(client.puts).hasSize(1);
+		PutObjectRequest put = client.puts.get(0);
+		assertThat(put.key()).isEqualTo("assets/img/products/ab12.png");
+		assertThat(put.contentType()).isEqualTo("image/png");
+		assertThat(put.cacheControl()).isEqualTo(S3Service.IMMUTABLE_CACHE_CONTROL);
+		assertThat(client.objects).containsEntry(key, 4L);
+	}
+}
@@ -0,0 +1,87 @@
+package com.onlyflans.bakery.service;
+
+import com.onlyflans.bakery.model.Token;
+import com.onlyflans.bakery.model.User;
+import com.onlyflans.bakery.model.dto.request.UserCreateRequest;
+import com.onlyflans.bakery.persistence.IUserPersistence;
+import com.onlyflans.bakery.persistence.token.TokenRepository;
+import com.onlyflans.bakery.security.TokenDigest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+		// BD propia: este contexto no se comparte con AuthServiceTests y data.sql vuelve a cargarse
+		"spring.datasource.url=jdbc:h2:mem:token-write-buffer",
+		"application.security.jwt.secret-key=b25seWZsYW5zLXRlc3Qtc2VjcmV0LWtleS1mb3ItaHMzODQtc2lnbmluZyEhISEh",
+		"application.security.jwt.expiration=900000",
+		"application.security.jwt.refresh-token.expiration=86400000",
+		"application.security.password.min-cost=4",
+		"application.security.password.max-cost=4",
+		"application.security.token-write-behind.enabled=true",
+		// El lote se escribe solo cuando la prueba llama a flush()
+		"application.security.token-write-behind.flush-interval-ms=3600000",
+		"application.security.token-write-behind.batch-size=10",
+		"aws.s3.bucket.name=onlyflans-test",
+		"aws.region=us-east-1"
+})
+@ActiveProfiles("test")
+class TokenWriteBufferTests {
+
+	@Autowired
+	private TokenWriteBuffer tokenWriteBuffer;
+
+	@Autowired
+	private TokenRepository tokenRepository;
+
+	@Autowired
+	private AuthService authService;
+
+	@Autowired
+	private IUserPersistence userPersistence;
+
+	private static Token token(User user, String jwt) {
+		return Token.builder()
+				.user(user)
+				.tokenHash(TokenDigest.sha256(jwt))
+				.tokenType(Token.TokenType.BEARER)
+				.expiresAt(Instant.now().plus(1, ChronoUnit.HOURS))
+				.build();
+	}
+
+	@Test
+	void oneBadRowDoesNotDropTheRestOfItsBatch() {
+		authService.register(new UserCreateRequest(
+				"33.333.333-3", "Usuario", "Del Buffer", LocalDate.of(1990, 1, 1),
+				"buffer@onlyflans.cl", "secreto123"
+		));
+		User user = userPersistence.findById("33.333.333-3").orElseThrow();
+		// Usuario que no existe en la BD: su fila hace fallar el lote completo
+		User missing = User.builder().rut("99.999.999-9").build();
+
+		List<Token> good = List.of(token(user, "jwt-1"), token(user, "jwt-2"), token(user, "jwt-3"));
+		Token bad = token(missing, "jwt-malo");
+		tokenWriteBuffer.add(good.get(0));
+		tokenWriteBuffer.add(bad);
+		tokenWriteBuffer.add(good.get(1));
+		tokenWriteBuffer.add(good.get(2));
+
+		tokenWriteBuffer.flush();
+
+		for (Token token : good) {
+			assertThat(tokenRepository.findByTokenHash(token.getTokenHash())).isPresent();
+			assertThat(tokenWriteBuffer.contains(TokenDigest.hex(token.getTokenHash()))).isFalse();
+		}
+		assertThat(tokenRepository.findByTokenHash(bad.getTokenHash())).isEmpty();
+		// La fila mala sigue pendiente hasta agotar max-row-attempts
+		assertThat(tokenWriteBuffer.contains(TokenDigest.hex(bad.getTokenHash()))).isTrue();
+	}
+}